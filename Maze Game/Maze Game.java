@@ -1,12 +1,39 @@
 import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
 
 import javalib.impworld.World;
 import javalib.impworld.WorldScene;
 import javalib.worldimages.AboveImage;
 import javalib.worldimages.BesideImage;
 import javalib.worldimages.CircleImage;
+import javalib.worldimages.ComputedPixelImage;
 import javalib.worldimages.EmptyImage;
 import javalib.worldimages.FontStyle;
 import javalib.worldimages.OutlineMode;
@@ -25,7 +52,9 @@ import tester.Tester;
  * can handle it just input it as false. Additionally, the
  * String autosolve solves depthFirst if the input is "d", 
  * breadthFirst if the input is "b", our custom (more optimized)
- * algorithim if the input is "o", and it wont autosolve
+ * algorithim if the input is "o", A* towards the goal if the input is
+ * "a", breadthFirst from both the start and the goal if the input is
+ * "bi", and it wont autosolve
  * at all if the input is anything else.
  * So, to create a random 5x8 maze that doesn't load on tick and
  * is automatically solved depthFirst, the syntax is:
@@ -46,55 +75,60 @@ class Cell {
   boolean correct;
   boolean player;
 
-  ArrayList<Cell> path;
+  int row; // position on the board, -1 until the cell is placed on one
+  int col;
 
   Cell(int n) {
     this.num = n;
     this.checked = false;
     this.player = false;
-    path = new ArrayList<Cell>();
+    this.row = -1;
+    this.col = -1;
   }
 
-  // updates the given cell
+  // gives n to this cell and every cell connected to it through cells
+  // with its num, skipping the checkedCells. Walks the region with its own
+  // stack, so a region can be as big as memory allows
   void updateCell(int n, ArrayList<Cell> checkedCells) {
-    ArrayList<Cell> newList = new ArrayList<Cell>();
-
-    for (Cell c : checkedCells) {
-      newList.add(c);
-    }
-
-    newList.add(this);
-
-    for (Cell c : this.getAdjacent()) {
-      if (!checkedCells.contains(c) && c.num == num) {
-        newList.add(c);
-        c.updateCell(n, newList);
+    int old = num;
+    HashSet<Cell> seen = new HashSet<Cell>(checkedCells);
+    ArrayDeque<Cell> stack = new ArrayDeque<Cell>();
+    seen.add(this);
+    stack.push(this);
+
+    while (!stack.isEmpty()) {
+      Cell cell = stack.pop();
+      for (int open = cell.openings(); open != 0; open &= open - 1) {
+        Cell c = cell.adjacent(Integer.lowestOneBit(open));
+        if (c.num == old && seen.add(c)) {
+          stack.push(c);
+        }
       }
+      cell.num = n;
     }
-    num = n;
   }
 
-  // updates the given cell
+  // returns the checkedCells followed by this cell and every cell connected
+  // to it that isn't in checkedCells, each once, depth first
   ArrayList<Cell> getConnected(ArrayList<Cell> checkedCells) {
-    ArrayList<Cell> newList = new ArrayList<Cell>();
-
-    for (Cell c : checkedCells) {
-      newList.add(c);
-    }
-
-    newList.add(this);
-
-    for (Cell c : this.getAdjacent()) {
-      if (!checkedCells.contains(c)) {
-        newList.add(c);
-        for (Cell newCell : c.getConnected(newList)) {
-          if (!newList.contains(newCell) && !checkedCells.contains(newCell)) {
-            newList.add(newCell);
-          }
+    ArrayList<Cell> newList = new ArrayList<Cell>(checkedCells);
+    HashSet<Cell> seen = new HashSet<Cell>(checkedCells);
+    ArrayDeque<Cell> stack = new ArrayDeque<Cell>();
+    seen.add(this);
+    stack.push(this);
+
+    while (!stack.isEmpty()) {
+      Cell cell = stack.pop();
+      newList.add(cell);
+      // pushed in reverse so the first neighbor comes out first
+      for (int open = cell.openings(); open != 0; 
+          open &= ~Integer.highestOneBit(open)) {
+        Cell c = cell.adjacent(Integer.highestOneBit(open));
+        if (seen.add(c)) {
+          stack.push(c);
         }
       }
     }
-
     return newList;
   }
 
@@ -110,28 +144,81 @@ class Cell {
     this.player = true;
   }
 
+  void playerOffCell() {
+    this.player = false;
+  }
+
+  boolean isChecked() {
+    return this.checked;
+  }
+
+  boolean isCorrect() {
+    return this.correct;
+  }
+
+  boolean hasPlayer() {
+    return this.player;
+  }
+
+  // moves the player one cell in the given direction, if there is no wall
   Cell movement(String s) {
-    if (s.equals("left") && this.left != null) {
-      this.left.playerOnCell();
-      this.player = false;
+    Cell next = this.neighbor(s);
+    if (next == null) {
+      return this;
+    }
+    next.playerOnCell();
+    this.playerOffCell();
+    return next;
+  }
+
+  // returns the cell one step in the given direction, or null if
+  // there is a wall in the way
+  Cell neighbor(String s) {
+    if (s.equals("left")) {
       return this.left;
     }
-    if (s.equals("right") && this.right != null) {
-      this.right.playerOnCell();
-      this.player = false;
+    if (s.equals("right")) {
       return this.right;
     }
-    if (s.equals("down") && this.top != null) {
-      this.top.playerOnCell();
-      this.player = false;
+    if (s.equals("down")) {
       return this.top;
     }
-    if (s.equals("up") && this.bottom != null) {
-      this.bottom.playerOnCell();
-      this.player = false;
+    if (s.equals("up")) {
       return this.bottom;
     }
-    return this;
+    return null;
+  }
+
+  // the directions this cell has a neighbor in, as MazeGrid direction bits
+  int openings() {
+    int open = 0;
+    if (this.top != null) {
+      open |= MazeGrid.DOWN;
+    }
+    if (this.right != null) {
+      open |= MazeGrid.RIGHT;
+    }
+    if (this.left != null) {
+      open |= MazeGrid.LEFT;
+    }
+    if (this.bottom != null) {
+      open |= MazeGrid.UP;
+    }
+    return open;
+  }
+
+  // the neighbor in one of the directions of openings
+  Cell adjacent(int direction) {
+    if (direction == MazeGrid.DOWN) {
+      return this.top;
+    }
+    if (direction == MazeGrid.RIGHT) {
+      return this.right;
+    }
+    if (direction == MazeGrid.LEFT) {
+      return this.left;
+    }
+    return this.bottom;
   }
 
   // return an arraylist of the adjacent cells of the given cell
@@ -153,24 +240,24 @@ class Cell {
     return newCells;
   }
 
-  // draws the background
-  WorldImage draw() {
+  // draws the background, cellSize pixels wide
+  WorldImage draw(int cellSize) {
     WorldImage background;
-    if (correct) {
-      background = new RectangleImage(Graph.CELL_SIZE, Graph.CELL_SIZE, 
+    if (this.isCorrect()) {
+      background = new RectangleImage(cellSize, cellSize, 
           OutlineMode.SOLID, Color.blue);
     }
-    else if (checked) {
-      background = new RectangleImage(Graph.CELL_SIZE, Graph.CELL_SIZE,
+    else if (this.isChecked()) {
+      background = new RectangleImage(cellSize, cellSize,
           OutlineMode.SOLID, Color.cyan);
     }
     else {
-      background = new RectangleImage(Graph.CELL_SIZE, Graph.CELL_SIZE, 
+      background = new RectangleImage(cellSize, cellSize, 
           OutlineMode.SOLID, Color.gray);
     }
 
-    if (player) {
-      WorldImage c = new CircleImage((Graph.CELL_SIZE / 2), 
+    if (this.hasPlayer()) {
+      WorldImage c = new CircleImage((cellSize / 2), 
           OutlineMode.SOLID, Color.BLACK);
       return new OverlayImage(c, background);
     }
@@ -178,12 +265,12 @@ class Cell {
     return background;
   }
 
-  WorldImage draw(Color c) {
+  WorldImage draw(int cellSize, Color c) {
 
-    WorldImage background = new RectangleImage(Graph.CELL_SIZE, 
-        Graph.CELL_SIZE, OutlineMode.SOLID, c);
-    if (player) {
-      WorldImage c2 = new CircleImage((Graph.CELL_SIZE / 2),
+    WorldImage background = new RectangleImage(cellSize, 
+        cellSize, OutlineMode.SOLID, c);
+    if (this.hasPlayer()) {
+      WorldImage c2 = new CircleImage((cellSize / 2),
           OutlineMode.SOLID, Color.BLACK);
       return new OverlayImage(c2, background);
     }
@@ -202,6 +289,240 @@ class Edge {
     this.to = t;
     this.weight = w;
   }
+
+  // represents the given wall of a MazeGrid as an Edge between two views
+  Edge(MazeGrid grid, int wall) {
+    this(new GridCell(grid, grid.wallFrom(wall)), 
+        new GridCell(grid, grid.wallTo(wall)),
+        grid.row(grid.wallFrom(wall)) + grid.col(grid.wallFrom(wall)));
+  }
+}
+
+// represents one cell of a MazeGrid. A GridCell is a short-lived view:
+// its neighbors and state live in the grid's arrays, so the inherited
+// fields are unused and the board itself holds no Cell objects
+class GridCell extends Cell {
+  MazeGrid grid;
+  int id;
+
+  GridCell(MazeGrid grid, int id) {
+    super(id);
+    this.grid = grid;
+    this.id = id;
+    this.row = grid.row(id);
+    this.col = grid.col(id);
+  }
+
+  void checkCell() {
+    grid.check(id);
+  }
+
+  void correctCell() {
+    grid.markCorrect(id);
+  }
+
+  void playerOnCell() {
+    grid.placePlayer(id);
+  }
+
+  void playerOffCell() {
+    grid.removePlayer(id);
+  }
+
+  boolean isChecked() {
+    return grid.checked.get(id);
+  }
+
+  boolean isCorrect() {
+    return grid.correct.get(id);
+  }
+
+  boolean hasPlayer() {
+    return grid.player.get(id);
+  }
+
+  Cell neighbor(String s) {
+    int next = -1;
+    if (s.equals("left")) {
+      next = grid.left(id);
+    }
+    if (s.equals("right")) {
+      next = grid.right(id);
+    }
+    if (s.equals("down")) {
+      next = grid.down(id);
+    }
+    if (s.equals("up")) {
+      next = grid.up(id);
+    }
+    if (next == -1) {
+      return null;
+    }
+    return new GridCell(grid, next);
+  }
+
+  int openings() {
+    return grid.openings(id);
+  }
+
+  Cell adjacent(int direction) {
+    return new GridCell(grid, grid.neighbor(id, direction));
+  }
+
+  // same order as Cell.getAdjacent, so the solvers behave the same
+  ArrayList<Cell> getAdjacent() {
+    ArrayList<Cell> newCells = new ArrayList<Cell>();
+    for (int open = openings(); open != 0; open &= open - 1) {
+      newCells.add(adjacent(Integer.lowestOneBit(open)));
+    }
+    return newCells;
+  }
+
+  // two views are the same cell if they look at the same slot of one grid
+  public boolean equals(Object o) {
+    if (!(o instanceof GridCell)) {
+      return false;
+    }
+    GridCell that = (GridCell) o;
+    return this.grid == that.grid && this.id == that.id;
+  }
+
+  public int hashCode() {
+    return this.id;
+  }
+}
+
+// draws a MazeGrid into two cached pixel images: the cells, and the walls
+// on a transparent layer above them. The whole board is painted once, and
+// after that each frame only repaints the cells the grid marked dirty and
+// erases the walls knocked down since, so a frame costs what changed
+// instead of the board
+class MazeRenderer {
+  static final Color CLEAR = new Color(0, 0, 0, 0);
+
+  MazeGrid grid;
+  int cellSize;
+  ComputedPixelImage cellLayer;
+  ComputedPixelImage wallLayer;
+
+  MazeRenderer(MazeGrid grid, int cellSize) {
+    this.grid = grid;
+    this.cellSize = Math.max(1, cellSize);
+    this.cellLayer = new ComputedPixelImage(grid.width * this.cellSize, 
+        grid.height * this.cellSize);
+    this.wallLayer = new ComputedPixelImage(grid.width * this.cellSize, 
+        grid.height * this.cellSize);
+
+    for (int id = 0; id < grid.size(); id++) {
+      paintCell(id);
+      if ((grid.walls[id] & MazeGrid.WALL_RIGHT) != 0) {
+        paintWall(2 * id);
+      }
+      if ((grid.walls[id] & MazeGrid.WALL_DOWN) != 0) {
+        paintWall(2 * id + 1);
+      }
+    }
+    grid.dirty.clear();
+    grid.knockedDown.clear();
+  }
+
+  // brings the cell layer up to date with the grid and returns it
+  WorldImage draw() {
+    BitSet dirty = grid.dirty;
+    for (int id = dirty.nextSetBit(0); id >= 0; id = dirty.nextSetBit(id + 1)) {
+      paintCell(id);
+    }
+    dirty.clear();
+    return cellLayer;
+  }
+
+  // brings the wall layer up to date with the grid and returns it
+  WorldImage drawWalls() {
+    BitSet removed = grid.knockedDown;
+    for (int w = removed.nextSetBit(0); w >= 0; w = removed.nextSetBit(w + 1)) {
+      paintWall(w);
+    }
+    removed.clear();
+    return wallLayer;
+  }
+
+  // repaints the one pixel wide line of the given wall, which is black
+  // wherever it or a wall crossing it is still standing
+  void paintWall(int wall) {
+    int cell = grid.wallFrom(wall);
+    int left = grid.col(cell) * cellSize;
+    int top = grid.row(cell) * cellSize;
+
+    for (int i = 0; i < cellSize; i++) {
+      int x = left + i;
+      int y = top + cellSize;
+      if ((wall & 1) == 0) {
+        x = left + cellSize;
+        y = top + i;
+      }
+      if (onWall(x, y)) {
+        wallLayer.setPixel(x, y, Color.BLACK);
+      }
+      else {
+        wallLayer.setPixel(x, y, CLEAR);
+      }
+    }
+  }
+
+  // does a standing wall go through the given pixel? Vertical walls sit on
+  // the first pixel column of the cell to their right and horizontal walls
+  // on the first pixel row of the cell below them, so only a wall's first
+  // pixel can be shared with another wall
+  boolean onWall(int x, int y) {
+    int col = x / cellSize;
+    int row = y / cellSize;
+    if (x % cellSize == 0 && col > 0 && col < grid.width && row < grid.height
+        && (grid.walls[grid.id(row, col - 1)] & MazeGrid.WALL_RIGHT) != 0) {
+      return true;
+    }
+    return y % cellSize == 0 && row > 0 && row < grid.height 
+        && col < grid.width
+        && (grid.walls[grid.id(row - 1, col)] & MazeGrid.WALL_DOWN) != 0;
+  }
+
+  // the background of the given cell, in the same colors as Cell.draw
+  Color colorOf(int id) {
+    if (id == 0) {
+      return Color.GREEN;
+    }
+    if (id == grid.size() - 1) {
+      return Color.MAGENTA;
+    }
+    if (grid.correct.get(id)) {
+      return Color.blue;
+    }
+    if (grid.checked.get(id)) {
+      return Color.cyan;
+    }
+    return Color.gray;
+  }
+
+  // repaints one cell, with the player's circle on top if it's there
+  void paintCell(int id) {
+    Color background = colorOf(id);
+    boolean player = grid.player.get(id);
+    int left = grid.col(id) * cellSize;
+    int top = grid.row(id) * cellSize;
+    int radius = cellSize / 2;
+
+    for (int dy = 0; dy < cellSize; dy++) {
+      for (int dx = 0; dx < cellSize; dx++) {
+        int fromX = dx - radius;
+        int fromY = dy - radius;
+        if (player && fromX * fromX + fromY * fromY <= radius * radius) {
+          cellLayer.setPixel(left + dx, top + dy, Color.BLACK);
+        }
+        else {
+          cellLayer.setPixel(left + dx, top + dy, background);
+        }
+      }
+    }
+  }
 }
 
 // represents the Maze World game
@@ -210,99 +531,265 @@ class Graph extends World {
   int clicks;
 
   Cell goal;
-  public static int BOARD_HEIGHT;
-  public static int BOARD_WIDTH;
-
-  public static int CELL_SIZE; // cell size to correspond to board size
+  MazeConfig config; // board and cell size of this maze
 
   boolean loadOnTick;
-
+  MetricsSink metrics; // gets timings and counts, null to record nothing
+  MazeEvents events; // gets every change to the board, null for none;
+                     // set with streamEvents
+  long tickBudget; // nanoseconds each loading tick may spend knocking down
+                   // walls, or 0 to look at one wall per tick
+  long generateNanos; // time the ticks so far spent loading the maze
+
+  MazeGrid grid; // represents the board
+  MazeGenerator generator; // knocks down the walls of grid
+  MazeCache cache; // finished mazes and their solutions, null for none
+  CachedMaze cached; // this maze's entry in the cache
+
+  // linked board and its walls, only built by the testing constructor
+  ArrayList<ArrayList<Cell>> cells;
   ArrayList<Edge> allEdges;
-  ArrayList<Edge> uncheckedEdges;
-  ArrayList<ArrayList<Cell>> cells; // represents the board
 
   ArrayList<Cell> path;
   boolean finished;
 
+  MazeRenderer renderer; // cached image of the cells of the current grid
+
   String autosolve;
+  boolean animateSolve; // show one explored cell per tick, or all at once
+  MazeSolution solution; // search being shown, null until a solve starts
+  MazeTree tree; // the maze hung from the goal, built when first asked for
+  int solveStep; // how many of the solution's explored cells are shown
 
   Cell playerCell;
 
   // standard constructor
   Graph(int bw, int bh, boolean loadOnTick, String autosolve) {
-    Graph.BOARD_HEIGHT = bh;
-    Graph.BOARD_WIDTH = bw;
-    Graph.CELL_SIZE = 750 / bh;
+    this(bw, bh, loadOnTick, autosolve, true);
+  }
+
+  // constructor that can show an autosolve in one tick instead of 
+  // one cell per tick
+  Graph(int bw, int bh, boolean loadOnTick, String autosolve,
+      boolean animateSolve) {
+    this(new MazeConfig(bw, bh), loadOnTick, autosolve, animateSolve);
+  }
+
+  // constructor for a maze with its own configuration
+  Graph(MazeConfig config, boolean loadOnTick, String autosolve,
+      boolean animateSolve) {
+    this(config, loadOnTick, autosolve, animateSolve, null);
+  }
+
+  // constructor that reuses the mazes and solutions in the given cache
+  Graph(MazeConfig config, boolean loadOnTick, String autosolve,
+      boolean animateSolve, MazeCache cache) {
+    this.config = config;
     this.loadOnTick = loadOnTick;
     this.autosolve = autosolve;
+    this.animateSolve = animateSolve;
+    this.cache = cache;
     resetGame();
 
   }
 
   // reset the Game
   void resetGame() {
-    clicks = 0;
-    allEdges = new ArrayList<Edge>();
-    uncheckedEdges = new ArrayList<Edge>();
-    finished = false;
-    this.cells = initCells();
+    cached = null;
+    if (cache != null && !loadOnTick) {
+      cached = cache.get(config, cacheKey());
+    }
 
-    for (Edge e : allEdges) {
-      uncheckedEdges.add(e);
+    if (cached != null) {
+      startGame(cached.toGrid(config));
+      solution = cached.solution;
+    }
+    else {
+      long start = System.nanoTime();
+      this.generator = new MazeGenerator(config);
+      generateNanos = 0;
+      if (!loadOnTick) {
+        generator.generate();
+        if (metrics != null) {
+          metrics.record("generate.nanos", System.nanoTime() - start);
+          metrics.count("generate.unions", generator.grid.size() - 1);
+          metrics.count("generate.walls", generator.nextWall);
+        }
+        cacheMaze();
+      }
+      startGame(generator.grid);
     }
+  }
 
-    if (!loadOnTick) {
-      Random rand = new Random(); // instance of random class
-      while (!allConnected()) {
-        Edge randomEdge = uncheckedEdges.get(
-            rand.nextInt(uncheckedEdges.size()));
-        Cell c1 = randomEdge.from;
-        Cell c2 = randomEdge.to;
-        uncheckedEdges.remove(randomEdge);
+  // adds the freshly generated maze to the cache
+  void cacheMaze() {
+    if (cache != null) {
+      cached = new CachedMaze(generator.grid.walls.clone(), null);
+      cache.put(config, cacheKey(), cached);
+    }
+  }
+
+  // what this game's maze is cached under besides its config: how it is
+  // solved
+  String cacheKey() {
+    return autosolve;
+  }
+
+  // runs the given solver unless this maze's solution came from the cache
+  void startSolver(MazeSolver solver, String mode) {
+    if (solution == null) {
+      long start = System.nanoTime();
+      if (mode.equals("p")) {
+        solver.alongPath(false);
+      }
+      else {
+        solver.search(mode);
+      }
+      if (metrics != null) {
+        metrics.record("solve.nanos", System.nanoTime() - start);
+        metrics.count("solve.expanded", solver.explored);
+      }
+      solution = new MazeSolution(solver);
+      if (cached != null) {
+        cache.putSolution(config, cacheKey(), solution);
+      }
+    }
+  }
 
-        if (c1.num != c2.num) {
+  // constructor for a maze saved with saveGame
+  Graph(MazeFile file, String autosolve, boolean animateSolve) {
+    this.config = file.config();
+    this.loadOnTick = false;
+    this.autosolve = autosolve;
+    this.animateSolve = animateSolve;
+    startGame(file.toGrid());
+  }
 
-          if (c1.num < c2.num) {
-            c2.updateCell(c1.num, new ArrayList<Cell>());
+  // resets the game with a maze generated row by row with Eller's
+  // algorithm instead of Kruskal's, streamed through the given file; config
+  // keeps its seed, but Eller's maze from that seed is not Kruskal's, so
+  // config.id() no longer rebuilds this board and the next reset goes back
+  // to Kruskal's
+  void streamGame(Path path) throws IOException {
+    loadOnTick = false;
+    cached = null;
+    new EllerGenerator(config).writeTo(path);
+    startGame(MazeFile.open(path).toGrid());
+  }
 
-          }
-          else {
-            c1.updateCell(c2.num, new ArrayList<Cell>());
-          }
+  // sends every change to the board to the given events from now on,
+  // starting with a snapshot of the board as it is, so a client can join a
+  // game already under way. Later boards are sent whole when they start
+  void streamEvents(MazeEvents events) {
+    this.events = events;
+    grid.events = events;
+    events.board(grid);
+  }
 
-          allEdges.remove(randomEdge);
-        }
-      }
-      goal = cells.get(BOARD_HEIGHT - 1).get(BOARD_WIDTH - 1);
+  // writes the current maze to the given file in the binary maze format;
+  // the walls are saved as they are, so a streamed maze loads back as it
+  // was even though the seed in the header would generate another one
+  void saveGame(Path path) throws IOException {
+    MazeFile.save(path, config, grid);
+  }
+
+  // starts a new game on the given board
+  void startGame(MazeGrid board) {
+    clicks = 0;
+    finished = false;
+    solution = null;
+    solveStep = 0;
+    tree = null;
+    this.grid = board;
+    if (events != null) {
+      board.events = events;
+      events.board(board);
+    }
 
+    if (!loadOnTick) {
+      goal = cellAt(config.height - 1, config.width - 1);
     }
-    remapCells();
     path = new ArrayList<Cell>();
-    path.add(cells.get(0).get(0));
+    path.add(cellAt(0, 0));
 
-    if (!(autosolve.equals("b") || autosolve.equals("o") || 
-        autosolve.equals("d"))) {
-      playerCell = cells.get(0).get(0);
+    if (!autosolving()) {
+      playerCell = cellAt(0, 0);
       playerCell.playerOnCell();
     }
   }
 
+  // the maze hung from the goal, built the first time a distance or the
+  // player's solution is asked for so generating a maze doesn't pay for it
+  MazeTree solutionTree() {
+    if (tree == null) {
+      tree = new MazeTree(grid, grid.size() - 1);
+    }
+    return tree;
+  }
+
+  // how many moves the given cell is from the goal, or -1 while the maze
+  // is still being generated
+  int distanceToGoal(Cell c) {
+    if (loadOnTick) {
+      return -1;
+    }
+    return solutionTree().depth[grid.id(c.row, c.col)];
+  }
+
+  // is the given cell the goal? Only looks at its position, so it is
+  // the same for every kind of cell and needs no lookup
+  boolean atGoal(Cell c) {
+    return c.row == config.height - 1 && c.col == config.width - 1;
+  }
+
+  // highlights the way from the start to the goal and ends the game,
+  // following each cell's parent in the tree hung from the goal
+  void showSolution() {
+    MazeTree index = solutionTree();
+    path = new ArrayList<Cell>();
+    int id = 0;
+    grid.markCorrect(id);
+    path.add(new GridCell(grid, id));
+    while (id != index.root) {
+      id = index.parent[id];
+      grid.markCorrect(id);
+      path.add(new GridCell(grid, id));
+    }
+    finished = true;
+  }
+
+  // is the maze solved by the computer instead of the player?
+  boolean autosolving() {
+    return autosolve.equals("b") || autosolve.equals("o") 
+        || autosolve.equals("d") || autosolve.equals("a") 
+        || autosolve.equals("bi");
+  }
+
+  // returns the cell at the given row and column
+  Cell cellAt(int row, int col) {
+    if (grid == null) {
+      return cells.get(row).get(col);
+    }
+    return new GridCell(grid, grid.id(row, col));
+  }
+
   // Constructor for testing
   Graph(int bw, int bh, ArrayList<ArrayList<Cell>> board, 
       ArrayList<Edge> edges) {
     clicks = 0;
-    Graph.BOARD_HEIGHT = bh;
-    Graph.BOARD_WIDTH = bw;
+    this.config = new MazeConfig(bw, bh);
     this.loadOnTick = false;
-    uncheckedEdges = new ArrayList<Edge>();
 
     this.cells = board;
     allEdges = edges;
 
-    for (Edge e : allEdges) {
-      uncheckedEdges.add(e);
+    // every cell learns its own position once, so cellToPosn is O(1)
+    for (int i = 0; i < board.size(); i++) {
+      for (int j = 0; j < board.get(i).size(); j++) {
+        board.get(i).get(j).row = i;
+        board.get(i).get(j).col = j;
+      }
     }
-
   }
 
   // Are all the cells currently connected?
@@ -321,18 +808,13 @@ class Graph extends World {
 
   // Converts a given cell to a posn
   public Posn cellToPosn(Cell c) {
-    for (int i = 0; i < BOARD_HEIGHT; i++) {
-      for (int j = 0; j < BOARD_WIDTH; j++) {
-        Cell cell = this.cells.get(i).get(j);
-        if (c.equals(cell)) {
-          return new Posn(j, i);
-        }
-      }
+    if (c.row == -1) {
+      return null;
     }
-    return null;
+    return new Posn(c.col, c.row);
   }
 
-  // Remaps the cells based off of the edges
+  // Remaps the linked cells based off of the edges
   void remapCells() {
     for (Edge e : allEdges) {
       Cell c1 = e.from;
@@ -358,161 +840,152 @@ class Graph extends World {
     }
   }
 
-  // initialize the cells
-  public ArrayList<ArrayList<Cell>> initCells() {
-    ArrayList<ArrayList<Cell>> result = new ArrayList<>();
-    int k = 0;
-    for (int i = 0; i < BOARD_HEIGHT; i++) {
-      ArrayList<Cell> row = new ArrayList<>(); // stores the current row
-      for (int j = 0; j < BOARD_WIDTH; j++) {
-        Cell c = new Cell(k);
-        k += 1;
-        row.add(c);
-      }
-      result.add(row);
+  // draw the game
+  public WorldScene makeScene() {
+    if (metrics == null) {
+      return drawScene();
     }
+    long allocated = MazeMetrics.allocatedBytes();
+    long start = System.nanoTime();
+    WorldScene scene = drawScene();
+    metrics.record("frame.nanos", System.nanoTime() - start);
+    if (allocated >= 0) {
+      metrics.record("frame.bytes", MazeMetrics.allocatedBytes() - allocated);
+    }
+    return scene;
+  }
 
-    // set up edges
-    for (int i = 0; i < BOARD_HEIGHT; i += 1) {
-      for (int j = 0; j < BOARD_WIDTH; j += 1) {
-
-        Cell modifyThis = result.get(i).get(j);
-
-        if (i == 0) {
-          modifyThis.bottom = null;
-        }
-        else {
-          modifyThis.bottom = result.get(i - 1).get(j);
-
-        }
-
-        if (i == BOARD_HEIGHT - 1) {
-          modifyThis.top = null;
-        }
-        else {
-          modifyThis.top = result.get(i + 1).get(j);
-          allEdges.add(new Edge(modifyThis, modifyThis.top, i + j));
-        }
-
-        if (j == 0) {
-          modifyThis.left = null;
-        }
-        else {
-          modifyThis.left = result.get(i).get(j - 1);
-        }
+  // draws the board, its walls, and the win message once it is solved
+  WorldScene drawScene() {
+    WorldScene background = new WorldScene(2000, 2000);// empty scene,
+    //where we will put our board
+    int x = (config.width * config.cellSize / 2);
+    int y = (config.height * config.cellSize / 2);
 
-        if (j == BOARD_WIDTH - 1) {
-          modifyThis.right = null;
-        }
-        else {
-          modifyThis.right = result.get(i).get(j + 1);
-          allEdges.add(new Edge(modifyThis, modifyThis.right, i + j));
-        }
+    background.placeImageXY(drawBoard(), x, y);
+    background.placeImageXY(new RectangleImage((2 * x), (2 * y), 
+        OutlineMode.OUTLINE, Color.BLACK), x, y);
 
+    if (grid == null) {
+      // linked board from the testing constructor
+      WorldImage hLine = new RectangleImage(config.cellSize, 1, 
+          OutlineMode.SOLID, Color.BLACK);
+      WorldImage vLine = new RectangleImage(1, config.cellSize,
+          OutlineMode.SOLID, Color.BLACK);
+      for (Edge e : allEdges) {
+        Posn p1 = cellToPosn(e.from);
+        Posn p2 = cellToPosn(e.to);
+        placeWall(background, p1.x, p1.y, p2.x, p2.y, hLine, vLine);
       }
     }
+    else {
+      // drawBoard already brought the renderer up to this grid
+      background.placeImageXY(renderer.drawWalls(), x, y);
+    }
 
-    return result;
-
+    if (finished) {
+      background.placeImageXY(new TextImage("YOU WIN!", x / 4,
+          FontStyle.BOLD_ITALIC, Color.BLACK), x, y);
+    }
+    return background;
   }
 
-  // draw the game
-  public WorldScene makeScene() {
-    WorldScene background = new WorldScene(2000, 2000);// empty scene,
-    //where we will put our board
+  // draws the cells of the board. Generated boards reuse the renderer's
+  // image and only repaint what changed since the last frame
+  WorldImage drawBoard() {
+    if (grid != null) {
+      if (renderer == null || renderer.grid != grid) {
+        renderer = new MazeRenderer(grid, config.cellSize);
+      }
+      return renderer.draw();
+    }
+
     WorldImage board = new EmptyImage(); // empty IMAGE (not scene) 
     //that we will use to build up our
-    for (int i = 0; i < BOARD_HEIGHT; i++) {
+    for (int i = 0; i < config.height; i++) {
       WorldImage row = new EmptyImage(); // build up the rows,
       //then add the rows to the board
-      for (int j = 0; j < BOARD_WIDTH; j++) {
+      for (int j = 0; j < config.width; j++) {
         WorldImage cell;
         if (i == 0 && j == 0) {
 
-          cell = this.cells.get(i).get(j).draw(Color.GREEN);
+          cell = this.cellAt(i, j).draw(config.cellSize, Color.GREEN);
         }
-        else if (i == BOARD_HEIGHT - 1 && j == BOARD_WIDTH - 1) {
-          cell = this.cells.get(i).get(j).draw(Color.MAGENTA);
+        else if (i == config.height - 1 && j == config.width - 1) {
+          cell = this.cellAt(i, j).draw(config.cellSize, Color.MAGENTA);
         }
         else {
-          cell = this.cells.get(i).get(j).draw();
+          cell = this.cellAt(i, j).draw(config.cellSize);
         }
         row = new BesideImage(row, cell);
       }
       board = new AboveImage(board, row);
     }
-    int x = (BOARD_WIDTH * CELL_SIZE / 2);
-    int y = (BOARD_HEIGHT * CELL_SIZE / 2);
-
-    background.placeImageXY(board, x, y);
-    background.placeImageXY(new RectangleImage((2 * x), (2 * y), 
-        OutlineMode.OUTLINE, Color.BLACK), x, y);
-    WorldImage hLine = new RectangleImage(Graph.CELL_SIZE, 1, 
-        OutlineMode.SOLID, Color.BLACK);
-    WorldImage vLine = new RectangleImage(1, Graph.CELL_SIZE,
-        OutlineMode.SOLID, Color.BLACK);
-
-    for (Edge e : allEdges) {
-      Posn p1 = cellToPosn(e.from);
-      Posn p2 = cellToPosn(e.to);
-      float pX = ((p1.x + p2.x) / 2f) + 0.5f;
-      float pY = ((p1.y + p2.y) / 2f) + 0.5f;
-      if ((p2.x - p1.x) != 0) {
-        background.placeImageXY(vLine, (int) (pX * Graph.CELL_SIZE), 
-            (int) (pY * Graph.CELL_SIZE));
-      }
-      else {
-        background.placeImageXY(hLine, (int) (pX * Graph.CELL_SIZE), 
-            (int) (pY * Graph.CELL_SIZE));
+    return board;
+  }
 
-      }
+  // places the wall between the cells at (x1, y1) and (x2, y2)
+  void placeWall(WorldScene background, int x1, int y1, int x2, int y2,
+      WorldImage hLine, WorldImage vLine) {
+    float pX = ((x1 + x2) / 2f) + 0.5f;
+    float pY = ((y1 + y2) / 2f) + 0.5f;
+    if ((x2 - x1) != 0) {
+      background.placeImageXY(vLine, (int) (pX * config.cellSize), 
+          (int) (pY * config.cellSize));
     }
+    else {
+      background.placeImageXY(hLine, (int) (pX * config.cellSize), 
+          (int) (pY * config.cellSize));
 
-    if (finished) {
-      background.placeImageXY(new TextImage("YOU WIN!", x / 4,
-          FontStyle.BOLD_ITALIC, Color.BLACK), x, y);
     }
-    return background;
   }
 
   public void onTick() {
     if (loadOnTick) {
-      Random rand = new Random(); // instance of random class
-      if (!allConnected()) {
-        Edge randomEdge = uncheckedEdges.get(
-            rand.nextInt(uncheckedEdges.size()));
-        Cell c1 = randomEdge.from;
-        Cell c2 = randomEdge.to;
-
-        if (c1.num != c2.num) {
-          if (c1.num < c2.num) {
-            c2.updateCell(c1.num, new ArrayList<Cell>());
-
-          }
-          else {
-            c1.updateCell(c2.num, new ArrayList<Cell>());
-          }
-
-          allEdges.remove(randomEdge);
-        }
-
-        uncheckedEdges.remove(randomEdge);
+      long start = System.nanoTime();
+      int regions = generator.regions.count;
+      if (!generator.done() && tickBudget > 0) {
+        generator.stepFor(tickBudget);
+      }
+      else if (!generator.done()) {
+        generator.step();
       }
       else {
-        remapCells();
+        goal = cellAt(config.height - 1, config.width - 1);
         loadOnTick = false;
+        cacheMaze();
+        // the time spent generating, not counting the frames in between
+        if (metrics != null) {
+          metrics.record("generate.nanos", generateNanos);
+          metrics.count("generate.walls", generator.nextWall);
+        }
+      }
+      generateNanos += System.nanoTime() - start;
+      if (metrics != null) {
+        metrics.count("generate.unions", regions - generator.regions.count);
       }
     }
     makeScene();
 
-    if (autosolve.equals("b")) {
-      solveBreadthFirst();
-    }
-    if (autosolve.equals("d")) {
-      solveDepthFirst();
-    }
-    if (autosolve.equals("o")) {
-      solveMaze(true);
+    // only a finished maze can be solved
+    if (!loadOnTick && autosolving()) {
+      do {
+        if (autosolve.equals("b")) {
+          solveBreadthFirst();
+        }
+        if (autosolve.equals("d")) {
+          solveDepthFirst();
+        }
+        if (autosolve.equals("o")) {
+          solveMaze(true);
+        }
+        if (autosolve.equals("a")) {
+          solveAStar();
+        }
+        if (autosolve.equals("bi")) {
+          solveBidirectional();
+        }
+      } while (!animateSolve && !finished);
     }
 
   }
@@ -520,161 +993,81 @@ class Graph extends World {
   public void onKeyEvent(String key) {
 
     if (key.equals("r")) {
+      config = config.next();
       resetGame();
     }
-    else {
-      if (!finished && !playerCell.equals(cells.get(BOARD_HEIGHT 
-          - 1).get(BOARD_WIDTH - 1))) {
-        playerCell = playerCell.movement(key);
-        if (playerCell.equals(cells.get(BOARD_HEIGHT 
-            - 1).get(BOARD_WIDTH - 1))) {
-          while (!finished) {
-            solveMaze(false);
-          }
-        }
+    else if (!finished && playerCell != null && !loadOnTick 
+        && !atGoal(playerCell)) {
+      playerCell = playerCell.movement(key);
+      if (atGoal(playerCell)) {
+        showSolution();
       }
     }
   }
 
-  // solves the maze
+  // solves the maze by walking down the solution path, showing the 
+  // wrong branches it passes if showChecked is true
   void solveMaze(boolean showChecked) {
-    if (!finished) {
-      // checks if path ends in goal cell
-      if (!path.get(path.size() - 1).equals(goal)) {
-        // sets up latest path to check connected from current end of path
-        ArrayList<Cell> latestPath = new ArrayList<Cell>();
-        latestPath.add(path.get(path.size() - 1));
-
-        //set up bool to stop the current search once the correct path
-        //has been found
-        boolean hitPath = false;
-        ArrayList<Cell> newCells = path.get(path.size() - 1).getAdjacent();
-        // if path is long enough remove already checked cells from 
-        //current adjacent
-        if (path.size() > 1) {
-          newCells.remove(newCells.indexOf(path.get(path.size() - 2)));
-        }
-
-        for (Cell c : newCells) {
-          if (!hitPath) {
-            // if theres only 1 new adjacent, its a one way
-            if (newCells.size() == 1) {
-              hitPath = true;
-              path.add(newCells.get(0));
-              path.get(path.size() - 1).checkCell();
-            }
-            // if not, check the connected cells for each potential 
-            // path and go down the correct one
-            else {
-              ArrayList<Cell> cellList = new ArrayList<Cell>();
-              cellList = c.getConnected(latestPath);
-              if (showChecked) {
-                cellList.get(1).checkCell();
-              }
-              if (cellList.contains(goal)) {
-                hitPath = true;
-                path.add(cellList.get(1));
-                cellList.get(1).checkCell();
-              }
-            }
-          }
-        }
-      }
-      else {
-        // once finished highlight the correct path
-        for (Cell c : path) {
-          c.correctCell();
-        }
-        finished = true;
-      }
+    if (solution == null) {
+      startSolver(new MazeSolver(grid), showChecked ? "o" : "p");
     }
+    showSolverStep();
   }
 
   //solves the maze DepthFirst
   void solveDepthFirst() {
-    if (!finished) {
-      // checks if path ends in goal cell
-      if (!path.get(path.size() - 1).equals(goal)) {
-        // sets up latest path to check connected from current end of path
-        ArrayList<Cell> latestPath = new ArrayList<Cell>();
-        latestPath.add(path.get(path.size() - 1));
-
-        // set up bool to stop the current search once the correct 
-        //path has been found
-        boolean hitPath = false;
-        ArrayList<Cell> newCells = path.get(path.size() - 1).getAdjacent();
-
-        // if path is long enough remove already checked cells 
-        //from current adjacent
-        if (path.size() > 1) {
-          newCells.remove(newCells.indexOf(path.get(path.size() - 2)));
-        }
-
-        for (Cell c : newCells) {
-          if (!hitPath) {
-            ArrayList<Cell> cellList = new ArrayList<Cell>();
-            cellList = c.getConnected(latestPath);
-            if (cellList.contains(goal)) {
-              hitPath = true;
-              path.add(cellList.get(1));
-              cellList.get(1).checkCell();
-            }
-            else {
-              for (Cell newCell : cellList) {
-                newCell.checkCell();
-              }
-            }
-          }
-        }
-      }
-      else {
-        // once finished highlight the correct path
-        for (Cell c : path) {
-          c.correctCell();
-        }
-        finished = true;
-      }
+    if (solution == null) {
+      startSolver(new MazeSolver(grid), "d");
     }
+    showSolverStep();
   }
 
   //solves the maze BreadthFirst
   void solveBreadthFirst() {
-    if (!finished) {
-      // checks if path ends in goal cell
-      if (!path.get(path.size() - 1).equals(goal)) {
-        // sets up latest path to check connected from current end of path
-        ArrayList<Cell> latestPath = new ArrayList<Cell>();
-        latestPath.add(path.get(path.size() - 1));
-
-        ArrayList<Cell> newCells = path.get(path.size() - 1).getAdjacent();
-
-        // if path is long enough remove already checked cells
-        //from current adjacent
-        if (path.size() > 1) {
-          newCells.remove(newCells.indexOf(path.get(path.size() - 2)));
-        }
+    if (solution == null) {
+      startSolver(new MazeSolver(grid), "b");
+    }
+    showSolverStep();
+  }
 
-        for (Cell c : newCells) {
-          ArrayList<Cell> cellList = new ArrayList<Cell>();
-          cellList = c.getConnected(latestPath);
-          if (cellList.contains(goal)) {
-            path.add(cellList.get(1));
-            cellList.get(1).checkCell();
-          }
-          else {
-            for (Cell newCell : cellList) {
-              newCell.checkCell();
-            }
-          }
-        }
+  //solves the maze with A*, guided by the distance to the goal
+  void solveAStar() {
+    if (solution == null) {
+      startSolver(new MazeSolver(grid), "a");
+    }
+    showSolverStep();
+  }
+
+  //solves the maze BreadthFirst from the start and the goal at once
+  void solveBidirectional() {
+    if (solution == null) {
+      startSolver(new MazeSolver(grid), "bi");
+    }
+    showSolverStep();
+  }
+
+  // shows the next cell the solver explored, or the solution path once
+  // every explored cell is shown
+  void showSolverStep() {
+    if (!finished) {
+      long start = System.nanoTime();
+      if (solveStep < solution.explored()) {
+        grid.check(solution.order[solveStep]);
+        solveStep += 1;
       }
       else {
         // once finished highlight the correct path
-        for (Cell c : path) {
-          c.correctCell();
+        path = new ArrayList<Cell>();
+        for (int id : solution.path) {
+          grid.markCorrect(id);
+          path.add(new GridCell(grid, id));
         }
         finished = true;
       }
+      if (metrics != null) {
+        metrics.count("solve.steps", 1);
+        metrics.record("solve.step.nanos", System.nanoTime() - start);
+      }
     }
   }
 
@@ -721,6 +1114,7 @@ class ExamplesGraph {
 
   WorldScene background = new WorldScene(2000, 2000);
   WorldImage board = new EmptyImage(); 
+  int cellSize = 20;
   WorldImage hLine;
   WorldImage vLine;
 
@@ -870,13 +1264,13 @@ class ExamplesGraph {
         WorldImage cell;
         if (i == 0 && j == 0) {
 
-          cell = this.board1.get(i).get(j).draw(Color.GREEN);
+          cell = this.board1.get(i).get(j).draw(cellSize, Color.GREEN);
         }
         else if (i == 2 - 1 && j == 2 - 1) {
-          cell = this.board1.get(i).get(j).draw(Color.MAGENTA);
+          cell = this.board1.get(i).get(j).draw(cellSize, Color.MAGENTA);
         }
         else {
-          cell = this.board1.get(i).get(j).draw();
+          cell = this.board1.get(i).get(j).draw(cellSize);
         }
         row = new BesideImage(row, cell);
       }
@@ -888,15 +1282,15 @@ class ExamplesGraph {
     background.placeImageXY(board, x, y);
     background.placeImageXY(new RectangleImage((2 * x), (2 * y), 
         OutlineMode.OUTLINE, Color.BLACK), x, y);
-    hLine = new RectangleImage(Graph.CELL_SIZE, 1, 
+    hLine = new RectangleImage(cellSize, 1, 
         OutlineMode.SOLID, Color.BLACK);
-    vLine = new RectangleImage(1, Graph.CELL_SIZE, 
+    vLine = new RectangleImage(1, cellSize, 
         OutlineMode.SOLID, Color.BLACK);
 
     float pX = ((1 + 0) / 2f) + 0.5f;
     float pY = ((1 + 1) / 2f) + 0.5f;
-    background.placeImageXY(hLine, (int) (pX * Graph.CELL_SIZE), 
-        (int) (pY * Graph.CELL_SIZE));
+    background.placeImageXY(hLine, (int) (pX * cellSize), 
+        (int) (pY * cellSize));
 
   }
 
@@ -924,12 +1318,17 @@ class ExamplesGraph {
     this.initFinishedWorld();
     this.initAUnfinishedWorld();
     this.makeSceneTest();
-    // testUnfinishedWorld.bigBang(Graph.CELL_SIZE * Graph.BOARD_WIDTH,
-    // Graph.CELL_SIZE * Graph.BOARD_HEIGHT, .0001f);
+    // testUnfinishedWorld.bigBang(cellSize * 2,
+    // cellSize * 2, .0001f);
 
     // tests for cell to posn
     t.checkExpect(testFinishedWorld.cellToPosn(this.c5), new Posn(0, 0));
     t.checkExpect(testFinishedWorld.cellToPosn(this.c6), new Posn(1, 0));
+    t.checkExpect(testFinishedWorld.cellToPosn(this.c8), new Posn(1, 1));
+    t.checkExpect(testFinishedWorld.cellToPosn(new Cell(3)), null);
+    Graph generated = new Graph(4, 3, false, "none");
+    t.checkExpect(generated.cellToPosn(generated.cellAt(2, 1)), 
+        new Posn(1, 2));
 
     // tests for allConnected
     t.checkExpect(testUnfinishedWorld.allConnected(), false);
@@ -977,31 +1376,46 @@ class ExamplesGraph {
     t.checkExpect(c3.movement("down"), c1);
 
     // tests for draw
-    t.checkExpect(c1.draw(), new OverlayImage(
-        new CircleImage((Graph.CELL_SIZE / 2),
+    t.checkExpect(c1.draw(cellSize), new OverlayImage(
+        new CircleImage((cellSize / 2),
             OutlineMode.SOLID, Color.BLACK),
-        new RectangleImage(Graph.CELL_SIZE,
-            Graph.CELL_SIZE, OutlineMode.SOLID, Color.gray)));
+        new RectangleImage(cellSize,
+            cellSize, OutlineMode.SOLID, Color.gray)));
 
     c4.checkCell();
-    t.checkExpect(c4.draw(), 
-        new RectangleImage(Graph.CELL_SIZE, Graph.CELL_SIZE,
+    t.checkExpect(c4.draw(cellSize), 
+        new RectangleImage(cellSize, cellSize,
             OutlineMode.SOLID, Color.cyan));
 
-    t.checkExpect(c8.draw(), new OverlayImage(
-        new CircleImage((Graph.CELL_SIZE / 2),
+    t.checkExpect(c8.draw(cellSize), new OverlayImage(
+        new CircleImage((cellSize / 2),
             OutlineMode.SOLID, Color.BLACK), 
-        new RectangleImage(Graph.CELL_SIZE, 
-            Graph.CELL_SIZE, OutlineMode.SOLID, Color.gray)));
+        new RectangleImage(cellSize, 
+            cellSize, OutlineMode.SOLID, Color.gray)));
 
-    t.checkExpect(c10.draw(), new OverlayImage(
-        new CircleImage((Graph.CELL_SIZE / 2), 
+    t.checkExpect(c10.draw(cellSize), new OverlayImage(
+        new CircleImage((cellSize / 2), 
             OutlineMode.SOLID, Color.BLACK), 
-        new RectangleImage(Graph.CELL_SIZE, 
-            Graph.CELL_SIZE, OutlineMode.SOLID, Color.blue)));
+        new RectangleImage(cellSize, 
+            cellSize, OutlineMode.SOLID, Color.blue)));
     // tests for initCell
     // t.checkExpect(testAUnfinishedWorld.initCells(), this.board1);
 
+    // tests for getConnected
+    ArrayList<Cell> connected = new ArrayList<Cell>();
+    connected.add(c1);
+    connected.add(c2);
+    t.checkExpect(c2.getConnected(new ArrayList<Cell>()).get(0), c2);
+    t.checkExpect(c1.getConnected(new ArrayList<Cell>()).get(1), c2);
+    t.checkExpect(new ArrayList<Cell>(
+        c1.getConnected(connected).subList(0, 2)), connected);
+    t.checkExpect(c1.getConnected(connected).contains(c3), true);
+
+    // tests for openings and adjacent
+    t.checkExpect(c1.openings(), MazeGrid.RIGHT | MazeGrid.UP);
+    t.checkExpect(c1.adjacent(MazeGrid.RIGHT), c2);
+    t.checkExpect(c1.adjacent(MazeGrid.UP), c3);
+
     // tests for getAdjacent
     cellArray.add(c2);
     cellArray.add(c3);
@@ -1032,9 +1446,1243 @@ class ExamplesGraph {
     t.checkExpect(c2.bottom, null);
     t.checkExpect(c4.top, null);
 
-    new Graph(10, 10, false, "autoSolve").bigBang(Graph.CELL_SIZE * 
-        Graph.BOARD_WIDTH, Graph.CELL_SIZE * Graph.BOARD_HEIGHT, .1f);
+    Graph game = new Graph(10, 10, false, "autoSolve");
+    game.bigBang(game.config.cellSize * game.config.width, 
+        game.config.cellSize * game.config.height, .1f);
+
+  }
+
+  // tests for the disjoint-set regions used by resetGame
+  void testUnionFind(Tester t) {
+    UnionFind uf = new UnionFind(4);
+    t.checkExpect(uf.count, 4);
+    t.checkExpect(uf.allConnected(), false);
+    t.checkExpect(uf.find(2), 2);
+
+    t.checkExpect(uf.union(0, 1), true);
+    t.checkExpect(uf.union(1, 0), false);
+    t.checkExpect(uf.find(1), uf.find(0));
+    t.checkExpect(uf.count, 3);
+
+    t.checkExpect(uf.union(2, 3), true);
+    t.checkExpect(uf.union(3, 1), true);
+    t.checkExpect(uf.find(3), uf.find(0));
+    t.checkExpect(uf.allConnected(), true);
+
+    // a generated maze is a spanning tree: one wall less than the cells
+    Graph g = new Graph(6, 5, false, "none");
+    t.checkExpect(g.generator.done(), true);
+    t.checkExpect(g.grid.wallCount(), 6 * 4 + 5 * 5 - (6 * 5 - 1));
+  }
+
+  // tests for mazes with their own sizes side by side
+  void testMazeConfig(Tester t) {
+    MazeConfig config = new MazeConfig(8, 5);
+    t.checkExpect(config.width, 8);
+    t.checkExpect(config.height, 5);
+    t.checkExpect(config.cellSize, 150);
+    t.checkExpect(new MazeConfig(8, 5, 3, 12).cellSize, 12);
+
+    Graph small = new Graph(4, 3, false, "b", false);
+    Graph big = new Graph(new MazeConfig(9, 7, 1, 10), false, "d", false);
+    t.checkExpect(small.config.width, 4);
+    t.checkExpect(small.config.cellSize, 250);
+    t.checkExpect(big.config.width, 9);
+    small.onTick();
+    big.onTick();
+    t.checkExpect(small.path.get(small.path.size() - 1), small.cellAt(2, 3));
+    t.checkExpect(big.path.get(big.path.size() - 1), big.cellAt(6, 8));
+    t.checkExpect(small.makeScene() != null, true);
+
+    // many mazes generated and solved at once on a thread pool
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    ArrayList<Future<Graph>> games = new ArrayList<Future<Graph>>();
+    for (int i = 0; i < 16; i++) {
+      int size = 5 + i;
+      games.add(pool.submit(() -> {
+        Graph g = new Graph(new MazeConfig(size, size + 1), false, "o", 
+            false);
+        g.onTick();
+        return g;
+      }));
+    }
+    try {
+      for (int i = 0; i < games.size(); i++) {
+        Graph g = games.get(i).get();
+        int size = 5 + i;
+        t.checkExpect(g.config.width, size);
+        t.checkExpect(g.finished, true);
+        t.checkExpect(g.grid.wallCount(), 
+            (size - 1) * (size + 1) + size * size - (size * (size + 1) - 1));
+      }
+    }
+    catch (InterruptedException | ExecutionException e) {
+      t.checkExpect(e, null);
+    }
+    pool.shutdown();
+  }
+
+  // tests for reproducing a maze from its seed and size
+  void testMazeSeeds(Tester t) {
+    MazeConfig config = new MazeConfig(40, 30, 0x3ade68b1L);
+    t.checkExpect(config.id(), "40x30-3ade68b1");
+    t.checkExpect(MazeConfig.fromId("40x30-3ade68b1"), config);
+    t.checkExpect(MazeConfig.fromId(new MazeConfig(3, 2, -5).id()).seed, 
+        -5L);
+    t.checkException(new IllegalArgumentException("Not a maze id: 40x30"),
+        config, "fromId", "40x30");
+    t.checkException(new IllegalArgumentException("Not a maze id: 4x3-zz"),
+        config, "fromId", "4x3-zz");
+
+    // two games with the same id have the same walls
+    Graph first = new Graph(MazeConfig.fromId("12x9-2a"), false, "none", 
+        true);
+    Graph second = new Graph(MazeConfig.fromId("12x9-2a"), true, "none", 
+        true);
+    while (second.loadOnTick) {
+      second.onTick();
+    }
+    t.checkExpect(second.grid.walls, first.grid.walls);
+
+    // resetting moves on to the next seed, the same way every time
+    first.onKeyEvent("r");
+    second.onKeyEvent("r");
+    t.checkExpect(first.config.seed == 0x2a, false);
+    t.checkExpect(first.config, new MazeConfig(12, 9, 0x2a).next());
+    t.checkExpect(first.grid.walls, second.grid.walls);
+    t.checkExpect(first.grid.walls, 
+        new MazeGenerator(first.config).generate().walls);
+  }
+
+  // tests for the cache of finished mazes
+  void testMazeCache(Tester t) {
+    MazeCache cache = new MazeCache(100);
+    MazeConfig small = new MazeConfig(5, 4, 1);
+    t.checkExpect(MazeCache.key(small, "b"), "5x4-1/b");
+    t.checkExpect(cache.get(small, "b"), null);
+    t.checkExpect(cache.misses, 1L);
+
+    CachedMaze a = new CachedMaze(new byte[20], null);
+    cache.put(small, "b", a);
+    t.checkExpect(cache.get(small, "b"), a);
+    t.checkExpect(cache.get(small, "d"), null);
+    t.checkExpect(cache.hits, 1L);
+    t.checkExpect(cache.misses, 2L);
+    t.checkExpect(cache.hitRate(), 1.0 / 3);
+
+    // the least recently used maze goes first once the cache is full
+    MazeConfig other = new MazeConfig(5, 4, 2);
+    CachedMaze b = new CachedMaze(new byte[20], null);
+    cache.put(other, "b", b);
+    cache.get(small, "b");
+    cache.put(new MazeConfig(6, 10, 3), "b", new CachedMaze(new byte[60], 
+        null));
+    t.checkExpect(cache.cells, 100L);
+    cache.put(new MazeConfig(1, 1, 4), "b", new CachedMaze(new byte[1], 
+        null));
+    t.checkExpect(cache.evictions, 1L);
+    t.checkExpect(cache.size(), 3);
+    t.checkExpect(cache.cells, 81L);
+    t.checkExpect(cache.get(other, "b"), null);
+    t.checkExpect(cache.get(small, "b"), a);
+
+    // a solution replaces its maze's entry and is weighed with it, and is
+    // dropped if the maze was evicted
+    MazeSolver search = new MazeSolver(new MazeGenerator(small).generate());
+    search.breadthFirst();
+    MazeSolution solution = new MazeSolution(search);
+    t.checkExpect(solution.explored(), search.explored);
+    t.checkExpect(solution.path, search.path());
+    MazeCache solving = new MazeCache(1000);
+    solving.put(small, "b", a);
+    solving.putSolution(small, "b", solution);
+    CachedMaze withPath = solving.get(small, "b");
+    t.checkExpect(withPath == a, false);
+    t.checkExpect(withPath.walls == a.walls, true);
+    t.checkExpect(withPath.solution, solution);
+    t.checkExpect(withPath.cells(), 
+        20L + search.explored + search.path().length);
+    t.checkExpect(solving.cells, withPath.cells());
+    solving.putSolution(other, "b", solution);
+    t.checkExpect(solving.size(), 1);
+    solving.put(small, "b", a);
+    t.checkExpect(solving.cells, 20L);
+
+    // a maze bigger than the whole cache isn't kept
+    cache.put(new MazeConfig(20, 20, 5), "b", new CachedMaze(new byte[400], 
+        null));
+    t.checkExpect(cache.size(), 0);
+    t.checkExpect(cache.cells, 0L);
+    t.checkConstructorException(
+        new IllegalArgumentException("Cache must hold at least one cell"), 
+        "MazeCache", 0L);
+
+    // a game served from the cache neither regenerates nor re-solves
+    MazeCache games = new MazeCache(1000);
+    MazeConfig config = new MazeConfig(10, 8, 42);
+    Graph first = new Graph(config, false, "b", false, games);
+    first.onTick();
+    t.checkExpect(first.finished, true);
+    t.checkExpect(games.misses, 1L);
+    MazeSolution solved = first.solution;
+    CachedMaze entry = games.entries.get(MazeCache.key(config, "b"));
+    t.checkExpect(entry.solution == solved, true);
+    t.checkExpect(games.cells, 80L + solved.explored() + solved.path.length);
+
+    Graph second = new Graph(config, false, "b", false, games);
+    t.checkExpect(games.hits, 1L);
+    t.checkExpect(second.generator, null);
+    t.checkExpect(second.solution, solved);
+    t.checkExpect(second.grid.walls, first.grid.walls);
+    t.checkExpect(second.grid == first.grid, false);
+    t.checkExpect(second.grid.checked.isEmpty(), true);
+    second.onTick();
+    t.checkExpect(second.finished, true);
+    t.checkExpect(second.path, first.path);
+
+    // another algorithm on the same maze is its own entry
+    Graph depth = new Graph(config, false, "d", false, games);
+    t.checkExpect(games.misses, 2L);
+    t.checkExpect(depth.grid.walls, first.grid.walls);
+
+    // mazes built one wall per tick are cached once they are done
+    Graph ticking = new Graph(new MazeConfig(3, 3, 7), true, "none", true, 
+        games);
+    while (ticking.loadOnTick) {
+      ticking.onTick();
+    }
+    t.checkExpect(games.size(), 3);
+  }
+
+  // tests for the row by row generator
+  void testEllerGenerator(Tester t) {
+    try {
+      Path file = Files.createTempFile("maze", ".bin");
+      file.toFile().deleteOnExit();
+      for (int[] size : new int[][] {{7, 5}, {1, 6}, {9, 1}, {1, 1}, 
+          {33, 17}}) {
+        new EllerGenerator(size[0], size[1], 8).writeTo(file);
+        t.checkExpect(Files.size(file), 
+            24 + MazeFile.dataBytes(size[0] * size[1]));
+        MazeFile maze = MazeFile.open(file);
+        t.checkExpect(maze.width, size[0]);
+        t.checkExpect(maze.height, size[1]);
+        t.checkExpect(maze.seed, 8L);
+        t.checkExpect(perfectMaze(maze.toGrid()), true);
+      }
+
+      // the same seed streams the same maze
+      ByteArrayOutputStream once = new ByteArrayOutputStream();
+      ByteArrayOutputStream twice = new ByteArrayOutputStream();
+      new EllerGenerator(new MazeConfig(13, 6, 4)).writeTo(once);
+      new EllerGenerator(new MazeConfig(13, 6, 4)).writeTo(twice);
+      t.checkExpect(once.toByteArray(), twice.toByteArray());
+      ByteArrayOutputStream other = new ByteArrayOutputStream();
+      new EllerGenerator(new MazeConfig(13, 6, 5)).writeTo(other);
+      t.checkExpect(Arrays.equals(once.toByteArray(), other.toByteArray()), 
+          false);
+
+      // a game can be played on a streamed maze
+      Graph game = new Graph(new MazeConfig(8, 6, 2), false, "b", false);
+      game.streamGame(file);
+      t.checkExpect(game.grid.walls, MazeFile.open(file).toGrid().walls);
+      t.checkExpect(perfectMaze(game.grid), true);
+      game.onTick();
+      t.checkExpect(game.finished, true);
+      t.checkExpect(game.cellAt(5, 7).isCorrect(), true);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests for weighted generation
+  void testWallWeights(Tester t) {
+    MazeGrid grid = new MazeGrid(4, 3);
+    int[] walls = grid.wallIds();
+    SplittableRandom rand = new SplittableRandom(1);
+    int[] sorted = MazeGenerator.sortByWeight(grid, walls, 
+        new RadialWeight(), rand);
+    int[] copy = sorted.clone();
+    Arrays.sort(copy);
+    t.checkExpect(copy, walls);
+    int[] weights = new int[sorted.length];
+    SplittableRandom again = new SplittableRandom(1);
+    // radial weights draw one number per wall, so replaying the walls in
+    // the same order gives the same weights
+    int[] byWall = new int[grid.size() * 2];
+    for (int wall : walls) {
+      byWall[wall] = new RadialWeight().weight(grid, wall, again);
+    }
+    for (int i = 0; i < sorted.length; i++) {
+      weights[i] = byWall[sorted[i]];
+    }
+    for (int i = 1; i < weights.length; i++) {
+      t.checkExpect(weights[i - 1] <= weights[i], true);
+    }
+
+    // a full horizontal bias makes every row one corridor, joined to the
+    // next row in one place
+    MazeGrid rows = new MazeGenerator(8, 5, 3, 
+        new BiasedWeight(true, 1)).generate();
+    t.checkExpect(perfectMaze(rows), true);
+    int across = 0;
+    for (int id = 0; id < rows.size(); id++) {
+      if (rows.right(id) != -1) {
+        across += 1;
+      }
+    }
+    t.checkExpect(across, 5 * 7);
+    MazeGrid columns = new MazeGenerator(8, 5, 3, 
+        new BiasedWeight(false, 1)).generate();
+    int downward = 0;
+    for (int id = 0; id < columns.size(); id++) {
+      if (columns.down(id) != -1) {
+        downward += 1;
+      }
+    }
+    t.checkExpect(downward, 8 * 4);
+
+    WallWeight[] kinds = {new RandomWeight(), new BiasedWeight(true, 0.5), 
+        new BiasedWeight(false, 0), new RadialWeight()};
+    for (WallWeight kind : kinds) {
+      MazeGrid maze = new MazeGenerator(30, 20, 7, kind).generate();
+      t.checkExpect(perfectMaze(maze), true);
+      t.checkExpect(new MazeGenerator(30, 20, 7, kind).generate().walls, 
+          maze.walls);
+
+      // the weights are part of the id, which rebuilds the weighted maze
+      MazeConfig config = new MazeConfig(30, 20, 7).weighted(kind);
+      t.checkExpect(config.id(), "30x20-7@" + kind.name());
+      MazeConfig back = MazeConfig.fromId(config.id());
+      t.checkExpect(back.weights.name(), kind.name());
+      t.checkExpect(new MazeGenerator(back).generate().walls, maze.walls);
+      t.checkExpect(config.next().weights, kind);
+    }
+    t.checkExpect(MazeConfig.fromId("30x20-7").weights, null);
+    MazeConfig plainConfig = new MazeConfig(30, 20, 7);
+    t.checkException(new IllegalArgumentException(
+        "Unknown wall weights: sideways"), plainConfig, "fromId", 
+        "30x20-7@sideways");
+    t.checkException(new IllegalArgumentException(
+        "Unknown wall weights: vertical-x"), plainConfig, "fromId", 
+        "30x20-7@vertical-x");
+    t.checkExpect(new BiasedWeight(false, 0.25).name(), "vertical-0.25");
+    t.checkConstructorException(
+        new IllegalArgumentException("Bias must be between 0 and 1"), 
+        "BiasedWeight", true, 2.0);
+
+    // weighted games generate and cache their own mazes
+    MazeCache cache = new MazeCache(1000);
+    Graph plain = new Graph(new MazeConfig(8, 5, 3), false, "b", true, 
+        cache);
+    Graph biased = new Graph(new MazeConfig(8, 5, 3)
+        .weighted(new BiasedWeight(true, 1)), false, "b", true, cache);
+    t.checkExpect(biased.config.id(), "8x5-3@horizontal-1.0");
+    t.checkExpect(biased.grid.walls, rows.walls);
+    t.checkExpect(cache.size(), 2);
+    t.checkExpect(cache.misses, 2L);
+    t.checkExpect(Arrays.equals(plain.grid.walls, biased.grid.walls), false);
+  }
+
+  // tests for recording what the game does
+  void testMazeMetrics(Tester t) {
+    LatencyHistogram histogram = new LatencyHistogram();
+    t.checkExpect(histogram.percentile(0.5), 0L);
+    for (long v : new long[] {0, 1, 3, 5, 100, 1000}) {
+      histogram.record(v);
+    }
+    t.checkExpect(histogram.samples(), 6L);
+    t.checkExpect(histogram.mean(), 184L);
+    t.checkExpect(histogram.buckets.get(0), 1L);
+    t.checkExpect(histogram.buckets.get(2), 1L);
+    t.checkExpect(histogram.buckets.get(7), 1L);
+    t.checkExpect(histogram.percentile(0.1), 0L);
+    t.checkExpect(histogram.percentile(0.5), 3L);
+    t.checkExpect(histogram.percentile(0.8), 127L);
+    t.checkExpect(histogram.percentile(1), 1000L);
+
+    MazeMetrics metrics = new MazeMetrics();
+    metrics.count("a", 2);
+    metrics.count("a", 3);
+    metrics.record("b", 10);
+    metrics.record("b", 30);
+    t.checkExpect(metrics.counter("a"), 5L);
+    t.checkExpect(metrics.counter("none"), 0L);
+    t.checkExpect(metrics.getCounters().get("a"), 5L);
+    t.checkExpect(metrics.getSamples().get("b"), 2L);
+    t.checkExpect(metrics.getMeans().get("b"), 20L);
+    t.checkExpect(metrics.getMaxes().get("b"), 30L);
+    t.checkExpect(metrics.getMedians().get("b"), 15L);
+    t.checkExpect(metrics.getP99s().get("b"), 30L);
+
+    // the same numbers can be read over JMX
+    try {
+      ObjectName id = metrics.register("test");
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      t.checkExpect(server.isRegistered(id), true);
+      TabularData counters = (TabularData) server.getAttribute(id, 
+          "Counters");
+      t.checkExpect(counters.get(new Object[] {"a"}).get("value"), 5L);
+      server.unregisterMBean(id);
+    }
+    catch (JMException e) {
+      t.checkExpect(e, null);
+    }
+    metrics.reset();
+    t.checkExpect(metrics.getCounters().isEmpty(), true);
+
+    // a game reports generation, solving and drawing
+    Graph game = new Graph(new MazeConfig(12, 9, 4), true, "b", true);
+    game.metrics = metrics;
+    game.tickBudget = 4000000;
+    while (game.loadOnTick) {
+      game.onTick();
+    }
+    t.checkExpect(metrics.counter("generate.unions"), 12L * 9 - 1);
+    t.checkExpect(metrics.histogram("generate.nanos").samples(), 1L);
+    t.checkExpect(metrics.histogram("generate.nanos").mean() > 0, true);
+    t.checkExpect(metrics.counter("generate.walls") >= 12L * 9 - 1, true);
+    while (!game.finished) {
+      game.onTick();
+    }
+    t.checkExpect(metrics.counter("solve.expanded"), 
+        (long) game.solution.explored());
+    t.checkExpect(metrics.counter("solve.steps"), 
+        (long) game.solution.explored() + 1);
+    t.checkExpect(metrics.histogram("solve.nanos").samples(), 1L);
+    t.checkExpect(metrics.histogram("solve.step.nanos").samples(), 
+        (long) game.solution.explored() + 1);
+    t.checkExpect(metrics.histogram("frame.nanos").samples() > 0, true);
+    t.checkExpect(metrics.histogram("frame.bytes").samples(), 
+        metrics.histogram("frame.nanos").samples());
+
+    metrics.reset();
+    game.onKeyEvent("r");
+    t.checkExpect(metrics.histogram("generate.nanos").samples(), 1L);
+    t.checkExpect(metrics.counter("generate.unions"), 12L * 9 - 1);
+    t.checkExpect(metrics.counter("generate.walls") >= 12L * 9 - 1, true);
+  }
+
+  // tests for streaming changes to the board
+  void testMazeEvents(Tester t) {
+    try {
+      MazeEvents events = new MazeEvents();
+      t.checkExpect(events.length, 5);
+      MazeGrid grid = new MazeGrid(3, 2);
+      grid.events = events;
+      grid.removeWall(4);
+      grid.check(2);
+      grid.check(3);
+      grid.check(1);
+      grid.placePlayer(5);
+      grid.markCorrect(300);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      events.board(new MazeGrid(1, 1));
+      events.drainTo(out);
+      t.checkExpect(events.length, 0);
+      byte[] bytes = out.toByteArray();
+      // the wall is 4 from 0, then 2, 1 and -2 from the last checked cell
+      t.checkExpect(Arrays.copyOfRange(bytes, 5, 9), 
+          new byte[] {(8 << 3) | 0, (4 << 3) | 1, (2 << 3) | 1, (3 << 3) | 1});
+      // 300 zigzags to 600, which takes two bytes
+      t.checkExpect(bytes.length, 5 + 5 + 2 + 3);
+
+      MazeEventReader reader = new MazeEventReader(
+          new ByteArrayInputStream(bytes));
+      t.checkExpect(reader.next(), true);
+      t.checkExpect(reader.type, MazeEvents.WALL_REMOVED);
+      t.checkExpect(reader.id, 4L);
+      reader.next();
+      reader.next();
+      reader.next();
+      t.checkExpect(reader.type, MazeEvents.CHECKED);
+      t.checkExpect(reader.id, 1L);
+      reader.next();
+      t.checkExpect(reader.type, MazeEvents.PLAYER);
+      t.checkExpect(reader.id, 5L);
+      reader.next();
+      t.checkExpect(reader.id, 300L);
+      reader.next();
+      t.checkExpect(reader.type, MazeEvents.BOARD);
+      t.checkExpect(reader.width, 1);
+      t.checkExpect(reader.next(), false);
+
+      // a client that joins halfway through loading rebuilds the whole
+      // game from the stream
+      MazeEvents stream = new MazeEvents();
+      Graph game = new Graph(new MazeConfig(15, 10, 2), true, "none", true);
+      for (int i = 0; i < 40; i++) {
+        game.onTick();
+      }
+      MazeGenerator loading = game.generator;
+      game.streamEvents(stream);
+      t.checkExpect(stream.length > 0, true);
+      while (game.loadOnTick) {
+        game.onTick();
+      }
+      game.onKeyEvent("down");
+      game.onKeyEvent("right");
+      game.showSolution();
+      ByteArrayOutputStream played = new ByteArrayOutputStream();
+      stream.drainTo(played);
+      MazeGrid rebuilt = new MazeEventReader(
+          new ByteArrayInputStream(played.toByteArray())).replay();
+      t.checkExpect(game.generator == loading, true);
+      t.checkExpect(rebuilt.walls, game.grid.walls);
+      t.checkExpect(rebuilt.correct, game.grid.correct);
+      t.checkExpect(rebuilt.player, game.grid.player);
+      // each wall knocked down took a byte or few, not a frame
+      t.checkExpect(played.size() < 4 * 15 * 10, true);
+
+      // a solved game on a generated board starts from a snapshot
+      MazeEvents solving = new MazeEvents();
+      Graph auto = new Graph(new MazeConfig(15, 10, 2), false, "b", false);
+      auto.streamEvents(solving);
+      auto.onTick();
+      ByteArrayOutputStream solved = new ByteArrayOutputStream();
+      solving.drainTo(solved);
+      MazeGrid replayed = new MazeEventReader(
+          new ByteArrayInputStream(solved.toByteArray())).replay();
+      t.checkExpect(replayed.walls, auto.grid.walls);
+      t.checkExpect(replayed.checked, auto.grid.checked);
+      t.checkExpect(replayed.correct, auto.grid.correct);
+
+      t.checkConstructorException(
+          new IOException("Not a maze event stream"), "MazeEventReader", 
+          new ByteArrayInputStream(new byte[] {0, 0, 0, 0, 1}));
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests for the maze server's sessions and protocol
+  void testMazeServer(Tester t) {
+    try {
+      MazeServer server = new MazeServer(new ServerSocket(0, 50, 
+          InetAddress.getLoopbackAddress()), new MazeCache(100000));
+      MazeMetrics metrics = new MazeMetrics();
+      server.metrics = metrics;
+
+      MazeConnection player = new MazeConnection(server);
+      t.checkExpect(player.handle("MOVE up"), 
+          "ERR No game, send NEW first");
+      t.checkExpect(player.handle("JUMP"), "ERR Unknown command: JUMP");
+      t.checkExpect(player.handle("NEW 3"), 
+          "ERR Usage: NEW <width> <height> [seed]");
+      t.checkExpect(player.handle("NEW 0 4"), 
+          "ERR Board must be 1x1 to 16777216 cells");
+      t.checkExpect(player.handle("new 6 4 12"), "OK 6x4-c");
+
+      // the same maze as the game's, walked to the goal
+      MazeGrid grid = new MazeGenerator(6, 4, 12).generate();
+      MazeSolver solver = new MazeSolver(grid);
+      solver.breadthFirst();
+      int[] way = solver.path();
+      t.checkExpect(player.handle("DIST"), "DIST " + (way.length - 1));
+      t.checkExpect(player.handle("SOLVE a"), 
+          "PATH " + way.length + " EXPANDED " + explored(grid, "a"));
+      String reply = "";
+      for (int i = 1; i < way.length; i++) {
+        reply = player.handle("MOVE " + direction(way[i - 1], way[i], 6));
+        if (i < way.length - 1) {
+          t.checkExpect(reply, "AT " + way[i] / 6 + " " + way[i] % 6);
+        }
+      }
+      t.checkExpect(reply, "WIN " + (way.length - 1));
+      t.checkExpect(player.handle("MOVE left"), "WIN " + (way.length - 1));
+      t.checkExpect(player.handle("DIST"), "DIST 0");
+      t.checkExpect(player.handle("MOVE sideways"), 
+          "ERR Unknown direction: sideways");
+
+      // a wall keeps the player where they are
+      MazeSession session = new MazeSession(new MazeConfig(2, 2, 1), 
+          new MazeTree(new MazeGrid(2, 2), 3));
+      t.checkExpect(session.move("right"), "AT 0 0");
+      t.checkExpect(session.moves, 0);
+
+      // a second player shares the cached maze and its tree, and only has
+      // a position of their own
+      MazeConnection other = new MazeConnection(server);
+      other.handle("NEW 6 4 12");
+      t.checkExpect(server.cache.hits, 1L);
+      t.checkExpect(other.session.player, 0);
+      t.checkExpect(other.session.grid == player.session.grid, true);
+      t.checkExpect(other.session.tree == player.session.tree, true);
+      t.checkExpect(other.session.grid.player.isEmpty(), true);
+      t.checkExpect(server.cache.cells, 24L * 4);
+      // one command per move, and 11 others
+      t.checkExpect(metrics.counter("server.commands"), 
+          (long) (way.length - 1 + 11));
+
+      // and over the socket, several players at once
+      Thread serving = new Thread(server::serve);
+      serving.start();
+      int port = server.socket.getLocalPort();
+      Socket[] sockets = new Socket[3];
+      for (int i = 0; i < sockets.length; i++) {
+        sockets[i] = new Socket(InetAddress.getLoopbackAddress(), port);
+      }
+      for (int i = 0; i < sockets.length; i++) {
+        PrintWriter out = new PrintWriter(sockets[i].getOutputStream(), 
+            true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            sockets[i].getInputStream()));
+        out.println("NEW 5 5 " + i);
+        t.checkExpect(in.readLine(), "OK " + new MazeConfig(5, 5, i).id());
+        out.println("DIST");
+        t.checkExpect(in.readLine().startsWith("DIST "), true);
+        out.println("QUIT");
+        t.checkExpect(in.readLine(), "BYE");
+        sockets[i].close();
+      }
+      server.close();
+      serving.join();
+      server.threads.awaitTermination(5, TimeUnit.SECONDS);
+      t.checkExpect(metrics.counter("server.connections"), 3L);
+      t.checkExpect(metrics.counter("server.players"), 0L);
+    }
+    catch (IOException | InterruptedException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // how many cells the given search expands on the given maze
+  int explored(MazeGrid grid, String mode) {
+    MazeSolver solver = new MazeSolver(grid);
+    solver.search(mode);
+    return solver.explored;
+  }
+
+  // the key that moves from one cell to the next on a board of the given
+  // width
+  String direction(int from, int to, int width) {
+    if (to == from + 1) {
+      return "right";
+    }
+    if (to == from - 1) {
+      return "left";
+    }
+    if (to == from + width) {
+      return "down";
+    }
+    return "up";
+  }
+
+  // tests for playing a maze with the arrow keys
+  void testPlayer(Tester t) {
+    Graph game = new Graph(new MazeConfig(6, 4, 12), false, "none", true);
+    t.checkExpect(game.tree, null);
+    t.checkExpect(game.atGoal(game.playerCell), false);
+    t.checkExpect(game.atGoal(game.cellAt(3, 5)), true);
+    t.checkExpect(game.atGoal(game.goal), true);
+
+    // walk the solution one key at a time
+    MazeSolver solver = new MazeSolver(game.grid);
+    solver.breadthFirst();
+    int[] way = solver.path();
+    for (int i = 1; i < way.length; i++) {
+      t.checkExpect(game.finished, false);
+      int from = way[i - 1];
+      int to = way[i];
+      String key = "up";
+      if (to == from + 1) {
+        key = "right";
+      }
+      else if (to == from - 1) {
+        key = "left";
+      }
+      else if (to == from + 6) {
+        key = "down";
+      }
+      game.onKeyEvent(key);
+      t.checkExpect(game.playerCell, game.cellAt(to / 6, to % 6));
+    }
+
+    // reaching the goal shows the whole way there at once
+    t.checkExpect(game.finished, true);
+    t.checkExpect(game.tree == null, false);
+    t.checkExpect(game.path.size(), way.length);
+    t.checkExpect(game.path.get(0), game.cellAt(0, 0));
+    t.checkExpect(game.path.get(way.length - 1), game.cellAt(3, 5));
+    for (int id : way) {
+      t.checkExpect(game.grid.correct.get(id), true);
+    }
+    t.checkExpect(game.grid.correct.cardinality(), way.length);
+    t.checkExpect(game.grid.checked.isEmpty(), true);
+
+    // keys do nothing once the game is over, or for the computer
+    game.onKeyEvent("left");
+    t.checkExpect(game.playerCell, game.cellAt(3, 5));
+    Graph auto = new Graph(new MazeConfig(6, 4, 12), false, "b", true);
+    t.checkExpect(auto.tree, null);
+    auto.onKeyEvent("right");
+    t.checkExpect(auto.playerCell, null);
+
+    // a maze loading on tick is indexed once it is done and asked for
+    Graph loading = new Graph(new MazeConfig(4, 4, 1), true, "none", true);
+    loading.onKeyEvent("right");
+    t.checkExpect(loading.playerCell, loading.cellAt(0, 0));
+    while (loading.loadOnTick) {
+      loading.onTick();
+    }
+    t.checkExpect(loading.tree, null);
+    t.checkExpect(loading.distanceToGoal(loading.cellAt(3, 3)), 0);
+    t.checkExpect(loading.tree == null, false);
+  }
+
+  // tests for loading a maze over several ticks
+  void testTickBudget(Tester t) {
+    MazeGenerator stepping = new MazeGenerator(3, 3, 6);
+    int removed = 0;
+    for (int i = 0; i < 12; i++) {
+      if (stepping.step()) {
+        removed += 1;
+      }
+    }
+    t.checkExpect(removed, 8);
+    t.checkExpect(stepping.done(), true);
+
+    // no time still knocks down a wall, and the clock is read every 64
+    MazeGenerator budgeted = new MazeGenerator(100, 100, 6);
+    int first = budgeted.stepFor(0);
+    t.checkExpect(first > 0, true);
+    t.checkExpect(budgeted.nextWall, 64);
+    int total = first;
+    while (!budgeted.done()) {
+      total += budgeted.stepFor(4000000);
+    }
+    t.checkExpect(total, 100 * 100 - 1);
+    t.checkExpect(budgeted.grid.walls, 
+        new MazeGenerator(100, 100, 6).generate().walls);
+
+    // a budgeted game builds its maze in far fewer ticks than walls
+    Graph game = new Graph(new MazeConfig(60, 40, 3), true, "none", true);
+    game.tickBudget = 4000000;
+    int ticks = 0;
+    while (game.loadOnTick) {
+      game.onTick();
+      ticks += 1;
+    }
+    t.checkExpect(ticks < 60 * 40 / 10, true);
+    t.checkExpect(perfectMaze(game.grid), true);
+    t.checkExpect(game.goal, game.cellAt(39, 59));
+  }
+
+  // tests for saving and loading mazes
+  void testMazeFile(Tester t) {
+    try {
+      Path file = Files.createTempFile("maze", ".bin");
+      file.toFile().deleteOnExit();
+      Graph game = new Graph(new MazeConfig(7, 5, 99), false, "none", true);
+      game.saveGame(file);
+      // 24 header bytes and 2 bits for each of the 35 cells
+      t.checkExpect(Files.size(file), 24L + 9);
+
+      MazeFile saved = MazeFile.open(file);
+      t.checkExpect(saved.width, 7);
+      t.checkExpect(saved.height, 5);
+      t.checkExpect(saved.seed, 99L);
+      t.checkExpect(saved.config().id(), game.config.id());
+      t.checkExpect(saved.walls(0), game.grid.walls[0]);
+      t.checkExpect(saved.walls(4, 6), game.grid.walls[34]);
+      t.checkExpect(saved.walls(2, 3), game.grid.walls[17]);
+      t.checkExpect(saved.toGrid().walls, game.grid.walls);
+
+      // a loaded game plays like the one that was saved
+      Graph loaded = new Graph(saved, "b", false);
+      t.checkExpect(loaded.grid.walls, game.grid.walls);
+      loaded.onTick();
+      t.checkExpect(loaded.finished, true);
+      t.checkExpect(loaded.path.get(loaded.path.size() - 1), 
+          loaded.cellAt(4, 6));
+
+      Path bad = Files.createTempFile("maze", ".bin");
+      bad.toFile().deleteOnExit();
+      Files.write(bad, new byte[] {1, 2, 3});
+      t.checkException(new IOException("Not a maze file: " + bad), 
+          saved, "open", bad);
+      Files.write(bad, Arrays.copyOf(Files.readAllBytes(file), 30));
+      t.checkException(new IOException("Truncated maze file: " + bad), 
+          saved, "open", bad);
+      byte[] whole = Files.readAllBytes(file);
+      Files.write(bad, Arrays.copyOf(whole, whole.length + 1));
+      t.checkException(new IOException("Trailing bytes in maze file: " 
+          + bad), saved, "open", bad);
+      Files.write(bad, MazeFile.header(1, 1, 0).putInt(4, 2).array());
+      t.checkException(new IOException("Unknown maze file version 2: " 
+          + bad), saved, "open", bad);
+      Files.write(bad, MazeFile.header(0, 5, 0).array());
+      t.checkException(new IOException("Bad maze size 0x5: " + bad), 
+          saved, "open", bad);
+      Files.write(bad, MazeFile.header(3, -1, 0).array());
+      t.checkException(new IOException("Bad maze size 3x-1: " + bad), 
+          saved, "open", bad);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // tests for walking regions too big to recurse over
+  void testLongRegion(Tester t) {
+    ArrayList<Cell> row = new ArrayList<Cell>();
+    for (int i = 0; i < 200000; i++) {
+      Cell c = new Cell(1);
+      if (i > 0) {
+        c.left = row.get(i - 1);
+        row.get(i - 1).right = c;
+      }
+      row.add(c);
+    }
+    Cell far = new Cell(1);
+    row.get(199999).right = far;
+    far.num = 2;
+
+    row.get(100000).updateCell(0, new ArrayList<Cell>());
+    t.checkExpect(row.get(0).num, 0);
+    t.checkExpect(row.get(199999).num, 0);
+    t.checkExpect(far.num, 2);
+
+    ArrayList<Cell> region = row.get(0).getConnected(new ArrayList<Cell>());
+    // far has another num, but is still connected
+    t.checkExpect(region.size(), 200001);
+    t.checkExpect(region.get(199999), row.get(199999));
+    t.checkExpect(region.get(200000), far);
+  }
+
+  // tests for the headless generator
+  void testMazeGenerator(Tester t) {
+    MazeGenerator gen = new MazeGenerator(5, 4, 7);
+    t.checkExpect(gen.done(), false);
+    gen.step();
+    t.checkExpect(gen.nextWall, 1);
+    // the first wall always joins two regions
+    t.checkExpect(gen.grid.wallCount(), gen.wallOrder.length - 1);
+    t.checkExpect(gen.grid.isWall(gen.wallOrder[0]), false);
+
+    // the shuffle keeps every wall exactly once
+    int[] shuffled = new MazeGrid(5, 4).wallIds();
+    MazeGenerator.shuffle(shuffled, new SplittableRandom(3));
+    Arrays.sort(shuffled);
+    t.checkExpect(shuffled, new MazeGrid(5, 4).wallIds());
+
+    MazeGrid grid = gen.generate();
+    t.checkExpect(gen.done(), true);
+    t.checkExpect(grid, gen.grid);
+    t.checkExpect(grid.wallCount(), 31 - 19);
+
+    // the same seed gives the same maze
+    MazeGrid again = new MazeGenerator(new MazeConfig(5, 4, 7)).generate();
+    t.checkExpect(again.walls, grid.walls);
+    MazeGrid other = new MazeGenerator(5, 4, 8).generate();
+    t.checkExpect(Arrays.equals(other.walls, grid.walls), false);
+
+    // the far corner is reachable in a finished maze
+    MazeSolver solver = new MazeSolver(grid, 0, 19);
+    solver.breadthFirst();
+    t.checkExpect(solver.path()[0], 0);
+    t.checkExpect(solver.visited.get(19), true);
+
+    MazeSolver named = new MazeSolver(grid);
+    named.search("d");
+    t.checkExpect(named.path()[named.path().length - 1], 19);
+    t.checkException(new IllegalArgumentException("Unknown solver: x"), 
+        new MazeSolver(grid), "search", "x");
+  }
+
+  // is the given grid one spanning tree: every cell connected, and no
+  // more passages than that takes?
+  boolean perfectMaze(MazeGrid grid) {
+    UnionFind regions = new UnionFind(grid.size());
+    int passages = 0;
+    for (int id = 0; id < grid.size(); id++) {
+      if (grid.right(id) != -1) {
+        regions.union(id, grid.right(id));
+        passages += 1;
+      }
+      if (grid.down(id) != -1) {
+        regions.union(id, grid.down(id));
+        passages += 1;
+      }
+    }
+    return regions.allConnected() && passages == grid.size() - 1;
+  }
+
+  // tests for the tiled generator
+  void testParallelMazeGenerator(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    ParallelMazeGenerator tiled = new ParallelMazeGenerator(37, 23, 5, 8);
+    t.checkExpect(tiled.tilesAcross, 5);
+    t.checkExpect(tiled.tilesDown, 3);
+    MazeGrid grid = tiled.generate(pool);
+    t.checkExpect(perfectMaze(grid), true);
+    t.checkExpect(perfectMaze(new MazeGenerator(6, 4, 1).generate()), true);
+    t.checkExpect(perfectMaze(new MazeGrid(2, 2)), false);
+
+    // the maze only depends on the seed, not on the tiles or threads
+    MazeGrid whole = new ParallelMazeGenerator(37, 23, 5, 64)
+        .generate(new ForkJoinPool(1));
+    MazeGrid small = new ParallelMazeGenerator(37, 23, 5, 3).generate(pool);
+    t.checkExpect(whole.walls, grid.walls);
+    t.checkExpect(small.walls, grid.walls);
+    MazeGrid other = new ParallelMazeGenerator(37, 23, 6, 8).generate(pool);
+    t.checkExpect(Arrays.equals(other.walls, grid.walls), false);
+    for (int[] size : new int[][] {{16, 16, 4}, {31, 7, 2}, {7, 40, 5}, 
+        {20, 20, 20}}) {
+      MazeGrid merged = new ParallelMazeGenerator(size[0], size[1], 9, 
+          size[2]).generate(pool);
+      MazeGrid kruskal = new ParallelMazeGenerator(size[0], size[1], 9, 
+          100).generate(pool);
+      t.checkExpect(merged.walls, kruskal.walls);
+    }
+
+    // a tile only carries up paths between its border cells, and a tile
+    // that is the whole board carries up nothing
+    ParallelMazeGenerator quarters = new ParallelMazeGenerator(8, 8, 2, 4);
+    MazeRegion corner = quarters.buildTile(0, 0);
+    t.checkExpect(corner.edges > 0, true);
+    t.checkExpect(corner.edges < 16, true);
+    for (int i = 0; i < 2 * corner.edges; i++) {
+      t.checkExpect(quarters.grid.row(corner.ends[i]) < 4 
+          && quarters.grid.col(corner.ends[i]) < 4, true);
+    }
+    t.checkExpect(new ParallelMazeGenerator(8, 8, 2, 8).buildTile(0, 0).edges, 
+        0);
+    quarters.generate(pool);
+    t.checkExpect(quarters.tileNanos.sum() > 0, true);
+    t.checkExpect(quarters.mergeNanos.sum() > 0, true);
+    t.checkExpect(perfectMaze(quarters.grid), true);
+
+    // one cell tiles and one row boards
+    t.checkExpect(perfectMaze(new ParallelMazeGenerator(5, 5, 1, 1)
+        .generate(pool)), true);
+    t.checkExpect(perfectMaze(new ParallelMazeGenerator(9, 1, 1, 4)
+        .generate(pool)), true);
+    pool.shutdown();
+  }
+
+  // tests for the searches replayed by the solve methods
+  void testMazeSolver(Tester t) {
+    // 0 - 1 - 2
+    // |       |
+    // 3 - 4   5
+    MazeGrid grid = new MazeGrid(3, 2);
+    grid.removeWall(0);
+    grid.removeWall(1);
+    grid.removeWall(2);
+    grid.removeWall(5);
+    grid.removeWall(6);
+
+    MazeSolver bfs = new MazeSolver(grid, 0, 5);
+    bfs.breadthFirst();
+    t.checkExpect(bfs.explored, 6);
+    t.checkExpect(bfs.order, new int[] {0, 3, 1, 4, 2, 5});
+    t.checkExpect(bfs.path(), new int[] {0, 1, 2, 5});
+
+    MazeSolver dfs = new MazeSolver(grid, 0, 5);
+    dfs.depthFirst();
+    t.checkExpect(dfs.order, new int[] {0, 3, 4, 1, 2, 5});
+    t.checkExpect(dfs.path(), new int[] {0, 1, 2, 5});
+
+    MazeSolver straight = new MazeSolver(grid, 0, 5);
+    straight.alongPath(true);
+    t.checkExpect(straight.explored, 4);
+    t.checkExpect(straight.order[0], 3);
+    t.checkExpect(straight.order[3], 5);
+    t.checkExpect(straight.path(), new int[] {0, 1, 2, 5});
+
+    MazeSolver pathOnly = new MazeSolver(grid, 0, 5);
+    pathOnly.alongPath(false);
+    t.checkExpect(pathOnly.explored, 3);
+    t.checkExpect(pathOnly.order[0], 1);
+
+    // A* takes the cells that look closest to the goal first
+    MazeSolver aStar = new MazeSolver(grid, 0, 2);
+    aStar.search("a");
+    t.checkExpect(aStar.explored, 3);
+    t.checkExpect(Arrays.copyOf(aStar.order, 3), new int[] {0, 1, 2});
+    t.checkExpect(aStar.path(), new int[] {0, 1, 2});
+    // but a dead end can look closer than the way around it
+    MazeSolver misled = new MazeSolver(grid, 0, 5);
+    misled.search("a");
+    t.checkExpect(misled.order, new int[] {0, 3, 4, 1, 2, 5});
+    t.checkExpect(misled.path(), new int[] {0, 1, 2, 5});
+    MazeSolver back = new MazeSolver(grid, 5, 3);
+    back.search("a");
+    t.checkExpect(back.path(), new int[] {5, 2, 1, 0, 3});
+
+    // the two breadth first searches meet in the middle
+    MazeSolver both = new MazeSolver(grid, 0, 5);
+    both.search("bi");
+    t.checkExpect(both.explored, 3);
+    t.checkExpect(Arrays.copyOf(both.order, 3), new int[] {0, 5, 2});
+    t.checkExpect(both.path(), new int[] {0, 1, 2, 5});
+    MazeSolver same = new MazeSolver(grid, 4, 4);
+    same.search("bi");
+    t.checkExpect(same.path(), new int[] {4});
+    MazeSolver apart = new MazeSolver(new MazeGrid(2, 2), 0, 3);
+    apart.search("bi");
+    t.checkExpect(apart.path(), new int[0]);
+
+    // on a real maze every solver finds the same path, and the guided
+    // ones expand fewer cells than breadth first
+    MazeGrid maze = new MazeGenerator(40, 30, 3).generate();
+    MazeSolver wide = new MazeSolver(maze);
+    wide.search("b");
+    for (String mode : new String[] {"d", "o", "a", "bi"}) {
+      MazeSolver other = new MazeSolver(maze);
+      other.search(mode);
+      t.checkExpect(other.path(), wide.path());
+    }
+    MazeSolver guided = new MazeSolver(maze);
+    guided.search("a");
+    t.checkExpect(guided.explored <= wide.explored, true);
+    MazeSolver meeting = new MazeSolver(maze);
+    meeting.search("bi");
+    t.checkExpect(meeting.explored <= wide.explored, true);
+
+    // the goal can't be reached through a wall
+    MazeSolver walled = new MazeSolver(new MazeGrid(2, 2), 0, 3);
+    walled.breadthFirst();
+    t.checkExpect(walled.path(), new int[0]);
+
+    // the animation shows one explored cell per tick
+    Graph g = new Graph(4, 3, false, "b");
+    g.onTick();
+    t.checkExpect(g.grid.checked.get(0), true);
+    t.checkExpect(g.solveStep, 1);
+    while (!g.finished) {
+      g.onTick();
+    }
+    t.checkExpect(g.solveStep, g.solution.explored());
+    t.checkExpect(g.path.get(0), g.cellAt(0, 0));
+    t.checkExpect(g.path.get(g.path.size() - 1), g.cellAt(2, 3));
+    t.checkExpect(g.cellAt(2, 3).isCorrect(), true);
+
+    // without animation the whole solve is shown in one tick
+    Graph quick = new Graph(4, 3, false, "d", false);
+    quick.onTick();
+    t.checkExpect(quick.finished, true);
+    t.checkExpect(quick.cellAt(0, 0).isCorrect(), true);
+
+    for (String mode : new String[] {"a", "bi"}) {
+      Graph guidedGame = new Graph(6, 5, false, mode, false);
+      t.checkExpect(guidedGame.autosolving(), true);
+      guidedGame.onTick();
+      t.checkExpect(guidedGame.finished, true);
+      t.checkExpect(guidedGame.cellAt(4, 5).isCorrect(), true);
+    }
+  }
+
+  // tests for the distance index over a finished maze
+  void testMazeTree(Tester t) {
+    // 0 - 1 - 2
+    // |       |
+    // 3 - 4   5
+    MazeGrid grid = new MazeGrid(3, 2);
+    grid.removeWall(0);
+    grid.removeWall(1);
+    grid.removeWall(2);
+    grid.removeWall(5);
+    grid.removeWall(6);
+
+    MazeTree tree = new MazeTree(grid);
+    t.checkExpect(tree.parent, new int[] {0, 0, 1, 0, 3, 2});
+    t.checkExpect(tree.depth, new int[] {0, 1, 2, 1, 2, 3});
+    t.checkExpect(tree.ancestor(5, 1), 1);
+    t.checkExpect(tree.lowestCommonAncestor(4, 5), 0);
+    t.checkExpect(tree.lowestCommonAncestor(2, 5), 2);
+    t.checkExpect(tree.distance(4, 5), 5);
+    t.checkExpect(tree.distance(5, 5), 0);
+    t.checkExpect(tree.path(4, 5), new int[] {4, 3, 0, 1, 2, 5});
+    t.checkExpect(tree.path(5, 1), new int[] {5, 2, 1});
+    t.checkExpect(tree.path(2, 2), new int[] {2});
+
+    // cells cut off from the root have no distance
+    MazeTree apart = new MazeTree(new MazeGrid(2, 2));
+    t.checkExpect(apart.distance(0, 3), -1);
+    t.checkExpect(apart.path(0, 3), new int[0]);
+
+    // on a real maze the index agrees with searching, from any cell to any
+    // cell, and jumps keep long walks up the tree short
+    MazeGrid maze = new MazeGenerator(30, 20, 11).generate();
+    MazeTree index = new MazeTree(maze, 17);
+    int[][] pairs = {{0, 599}, {599, 0}, {250, 17}, {17, 250}, {42, 43},
+        {123, 456}, {300, 300}};
+    for (int[] pair : pairs) {
+      MazeSolver solver = new MazeSolver(maze, pair[0], pair[1]);
+      solver.breadthFirst();
+      t.checkExpect(index.path(pair[0], pair[1]), solver.path());
+      t.checkExpect(index.distance(pair[0], pair[1]), 
+          solver.path().length - 1);
+    }
+    int deepest = 0;
+    for (int cell = 0; cell < maze.size(); cell++) {
+      if (index.depth[cell] > index.depth[deepest]) {
+        deepest = cell;
+      }
+    }
+    int hops = 0;
+    for (int cell = deepest; cell != 17; cell = index.jump[cell]) {
+      hops += 1;
+    }
+    t.checkExpect(hops <= 2 * 32 - Integer.numberOfLeadingZeros(
+        index.depth[deepest]), true);
+
+    // the game keeps the distance to the goal of any cell
+    Graph game = new Graph(new MazeConfig(6, 5, 9), false, "none", true);
+    t.checkExpect(game.distanceToGoal(game.cellAt(4, 5)), 0);
+    MazeSolver solved = new MazeSolver(game.grid);
+    solved.breadthFirst();
+    t.checkExpect(game.distanceToGoal(game.cellAt(0, 0)), 
+        solved.path().length - 1);
+    Graph loading = new Graph(new MazeConfig(6, 5, 9), true, "none", true);
+    t.checkExpect(loading.distanceToGoal(loading.cellAt(0, 0)), -1);
+  }
+
+  // tests for the cached cell image drawn by makeScene
+  void testMazeRenderer(Tester t) {
+    MazeGrid grid = new MazeGrid(3, 2);
+    MazeRenderer renderer = new MazeRenderer(grid, 4);
+    ComputedPixelImage image = renderer.cellLayer;
+    t.checkExpect(renderer.draw(), image);
+    t.checkExpect(image.getPixel(0, 0), Color.GREEN);
+    t.checkExpect(image.getPixel(11, 7), Color.MAGENTA);
+    t.checkExpect(image.getPixel(5, 1), Color.gray);
+
+    // state changes only mark the cell dirty until the next frame
+    grid.check(1);
+    grid.markCorrect(3);
+    t.checkExpect(grid.dirty.cardinality(), 2);
+    t.checkExpect(image.getPixel(5, 1), Color.gray);
+    renderer.draw();
+    t.checkExpect(grid.dirty.isEmpty(), true);
+    t.checkExpect(image.getPixel(5, 1), Color.cyan);
+    t.checkExpect(image.getPixel(7, 3), Color.cyan);
+    t.checkExpect(image.getPixel(0, 4), Color.blue);
+
+    // the player is a circle in the middle of its cell
+    new GridCell(grid, 2).playerOnCell();
+    renderer.draw();
+    t.checkExpect(image.getPixel(10, 2), Color.BLACK);
+    t.checkExpect(image.getPixel(8, 0), Color.gray);
+    new GridCell(grid, 2).playerOffCell();
+    renderer.draw();
+    t.checkExpect(image.getPixel(10, 2), Color.gray);
+
+    // walls are drawn once, and knocked down walls are erased
+    ComputedPixelImage walls = renderer.wallLayer;
+    t.checkExpect(renderer.drawWalls(), walls);
+    t.checkExpect(walls.getPixel(4, 1), Color.BLACK);
+    t.checkExpect(walls.getPixel(1, 4), Color.BLACK);
+    t.checkExpect(walls.getPixel(5, 4), Color.BLACK);
+    t.checkExpect(walls.getPixel(4, 6), Color.BLACK);
+    t.checkExpect(walls.getPixel(5, 5), MazeRenderer.CLEAR);
+    t.checkExpect(walls.getPixel(0, 0), MazeRenderer.CLEAR);
+    grid.removeWall(0);
+    grid.removeWall(3);
+    t.checkExpect(walls.getPixel(4, 1), Color.BLACK);
+    renderer.drawWalls();
+    t.checkExpect(grid.knockedDown.isEmpty(), true);
+    t.checkExpect(walls.getPixel(4, 1), MazeRenderer.CLEAR);
+    t.checkExpect(walls.getPixel(5, 4), MazeRenderer.CLEAR);
+    // the corner is still part of the wall right of cell 3
+    t.checkExpect(walls.getPixel(4, 4), Color.BLACK);
+    grid.removeWall(6);
+    renderer.drawWalls();
+    t.checkExpect(walls.getPixel(4, 4), MazeRenderer.CLEAR);
+    t.checkExpect(walls.getPixel(4, 6), MazeRenderer.CLEAR);
+
+    // a new grid gets a new renderer
+    Graph g = new Graph(3, 2, false, "none");
+    g.makeScene();
+    MazeRenderer first = g.renderer;
+    g.makeScene();
+    t.checkExpect(g.renderer == first, true);
+    g.resetGame();
+    g.makeScene();
+    t.checkExpect(g.renderer == first, false);
+  }
 
+  // tests for the packed board and the cell views on top of it
+  void testMazeGrid(Tester t) {
+    MazeGrid grid = new MazeGrid(3, 2);
+    t.checkExpect(grid.size(), 6);
+    t.checkExpect(grid.id(1, 2), 5);
+    t.checkExpect(grid.row(5), 1);
+    t.checkExpect(grid.col(5), 2);
+    t.checkExpect(grid.wallIds().length, 7);
+    t.checkExpect(grid.wallCount(), 7);
+
+    // every wall is standing, so nothing is reachable
+    t.checkExpect(grid.right(0), -1);
+    t.checkExpect(grid.down(0), -1);
+    t.checkExpect(new GridCell(grid, 0).getAdjacent(), new ArrayList<Cell>());
+
+    // wall 0 is right of cell 0, wall 3 is below cell 1
+    t.checkExpect(grid.wallFrom(0), 0);
+    t.checkExpect(grid.wallTo(0), 1);
+    t.checkExpect(grid.wallTo(3), 4);
+    grid.removeWall(0);
+    grid.removeWall(3);
+    t.checkExpect(grid.isWall(0), false);
+    t.checkExpect(grid.isWall(1), true);
+    t.checkExpect(grid.wallCount(), 5);
+    t.checkExpect(grid.right(0), 1);
+    t.checkExpect(grid.left(1), 0);
+    t.checkExpect(grid.down(1), 4);
+    t.checkExpect(grid.up(4), 1);
+    t.checkExpect(grid.left(0), -1);
+    t.checkExpect(grid.up(1), -1);
+
+    // the openings mask has a bit for each neighbor with no wall between
+    t.checkExpect(grid.openings(0), MazeGrid.RIGHT);
+    t.checkExpect(grid.openings(1), MazeGrid.DOWN | MazeGrid.LEFT);
+    t.checkExpect(grid.openings(4), MazeGrid.UP);
+    t.checkExpect(grid.openings(5), 0);
+    t.checkExpect(grid.neighbor(1, MazeGrid.DOWN), 4);
+    t.checkExpect(grid.neighbor(1, MazeGrid.RIGHT), 2);
+    t.checkExpect(grid.neighbor(1, MazeGrid.LEFT), 0);
+    t.checkExpect(grid.neighbor(4, MazeGrid.UP), 1);
+    t.checkExpect(new GridCell(grid, 1).openings(), grid.openings(1));
+    t.checkExpect(new GridCell(grid, 1).adjacent(MazeGrid.DOWN), 
+        new GridCell(grid, 4));
+
+    // views of the same slot are the same cell
+    t.checkExpect(new GridCell(grid, 4).equals(new GridCell(grid, 4)), true);
+    t.checkExpect(new GridCell(grid, 4).equals(new GridCell(grid, 1)), false);
+    ArrayList<Cell> adjacent = new ArrayList<Cell>();
+    adjacent.add(new GridCell(grid, 4));
+    adjacent.add(new GridCell(grid, 0));
+    t.checkExpect(new GridCell(grid, 1).getAdjacent(), adjacent);
+
+    // state lives in the grid, not in the views
+    new GridCell(grid, 2).checkCell();
+    new GridCell(grid, 3).correctCell();
+    t.checkExpect(new GridCell(grid, 2).isChecked(), true);
+    t.checkExpect(grid.checked.get(2), true);
+    t.checkExpect(new GridCell(grid, 3).isCorrect(), true);
+    t.checkExpect(new GridCell(grid, 1).isChecked(), false);
+
+    // movement goes through the walls of the grid
+    Cell player = new GridCell(grid, 0);
+    player.playerOnCell();
+    t.checkExpect(player.movement("down"), player);
+    player = player.movement("right");
+    t.checkExpect(player, new GridCell(grid, 1));
+    t.checkExpect(grid.player.get(0), false);
+    player = player.movement("down");
+    t.checkExpect(player, new GridCell(grid, 4));
+    t.checkExpect(new GridCell(grid, 4).hasPlayer(), true);
+    t.checkExpect(player.movement("up"), new GridCell(grid, 1));
+
+    t.checkExpect(new GridCell(grid, 4).row, 1);
+    t.checkExpect(new GridCell(grid, 4).col, 1);
+    t.checkExpect(new Edge(grid, 3).from, new GridCell(grid, 1));
+    t.checkExpect(new Edge(grid, 3).to, new GridCell(grid, 4));
+    t.checkExpect(new Edge(grid, 3).weight, 1);
   }
 
   /*
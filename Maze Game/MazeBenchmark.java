@@ -0,0 +1,257 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/*
+ * Benchmarks for the hot paths of the game: MazeGenerator, each
+ * autosolve mode, cellToPosn and makeScene, over a range of board sizes.
+ * Each benchmark is warmed up, then run for a fixed time, and reports its
+ * throughput and how many bytes it allocates per operation.
+ *
+ *   java MazeBenchmark [sizes...] [benchmark names...]
+ *
+ * for example "java MazeBenchmark 10 100 solve-b" only runs the breadth
+ * first solver on 10x10 and 100x100 boards. Needs javalib on the classpath
+ * for the Graph benchmarks. "scaling" is not run by default: it times
+ * ParallelMazeGenerator on pools of 1, 2, 4... threads up to the number of
+ * cores, split into the time spent building tiles and merging regions.
+ */
+class MazeBenchmark {
+  static final long WARMUP_NANOS = 500000000L;
+  static final long MEASURE_NANOS = 1000000000L;
+  static final int[] DEFAULT_SIZES = {10, 100, 500, 1000, 2000};
+  static final int SCALING_RUNS = 5; // the best of these runs is reported
+
+  static long sink; // results go here so the JIT can't drop the work
+
+  String name;
+  int size;
+  Supplier<Runnable> setup; // builds the fixture and returns the operation
+  Runnable operation; // null until the benchmark is set up
+
+  MazeBenchmark(String name, int size, Supplier<Runnable> setup) {
+    this.name = name;
+    this.size = size;
+    this.setup = setup;
+  }
+
+  public static void main(String[] args) {
+    ArrayList<Integer> sizes = new ArrayList<Integer>();
+    ArrayList<String> names = new ArrayList<String>();
+    for (String arg : args) {
+      if (arg.matches("\\d+")) {
+        sizes.add(Integer.parseInt(arg));
+      }
+      else {
+        names.add(arg);
+      }
+    }
+    if (sizes.isEmpty()) {
+      for (int size : DEFAULT_SIZES) {
+        sizes.add(size);
+      }
+    }
+
+    boolean scaling = names.remove("scaling");
+    if (names.isEmpty() && scaling) {
+      for (int size : sizes) {
+        scaling(size);
+      }
+      return;
+    }
+
+    System.out.println(String.format("%-12s %11s %12s %14s %12s %12s",
+        "benchmark", "size", "ops/s", "ns/op", "bytes/op", "alloc MB/s"));
+    for (int size : sizes) {
+      for (MazeBenchmark b : benchmarks(size)) {
+        if (names.isEmpty() || names.contains(b.name)) {
+          b.run();
+        }
+      }
+    }
+    if (scaling) {
+      for (int size : sizes) {
+        scaling(size);
+      }
+    }
+  }
+
+  // times ParallelMazeGenerator on a size x size board with more and more
+  // threads, next to MazeGenerator on the same board. Tile and merge time
+  // are added up over the threads, so with a perfect split they stay flat
+  // while the wall clock time drops
+  static void scaling(int size) {
+    long serial = Long.MAX_VALUE;
+    for (int run = 0; run < SCALING_RUNS; run++) {
+      long start = System.nanoTime();
+      sink += new MazeGenerator(size, size, size).generate().walls[0];
+      serial = Math.min(serial, System.nanoTime() - start);
+    }
+    System.out.println(String.format("%-12s %11s %8s %10s %10s %10s %8s",
+        "scaling", "size", "threads", "total ms", "tiles ms", "merge ms", 
+        "speedup"));
+    System.out.println(String.format("%-12s %11s %8s %10.1f %10s %10s %8s",
+        "serial", size + "x" + size, 1, serial / 1e6, "", "", "1.00"));
+
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; threads <= cores; threads *= 2) {
+      scaling(size, threads, serial);
+      if (threads < cores && threads * 2 > cores) {
+        scaling(size, cores, serial);
+      }
+    }
+  }
+
+  // prints the best of a few runs of ParallelMazeGenerator on the given
+  // number of threads
+  static void scaling(int size, int threads, long serial) {
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    ParallelMazeGenerator best = null;
+    long bestNanos = Long.MAX_VALUE;
+    for (int run = 0; run < SCALING_RUNS; run++) {
+      ParallelMazeGenerator generator = new ParallelMazeGenerator(size, size, 
+          size, ParallelMazeGenerator.DEFAULT_TILE_SIZE);
+      long start = System.nanoTime();
+      sink += generator.generate(pool).walls[0];
+      long elapsed = System.nanoTime() - start;
+      if (elapsed < bestNanos) {
+        best = generator;
+        bestNanos = elapsed;
+      }
+    }
+    pool.shutdown();
+    System.out.println(String.format(
+        "%-12s %11s %8d %10.1f %10.1f %10.1f %8.2f", "parallel", 
+        size + "x" + size, threads, bestNanos / 1e6, 
+        best.tileNanos.sum() / 1e6, best.mergeNanos.sum() / 1e6, 
+        (double) serial / bestNanos));
+  }
+
+  // every benchmark on a size x size board. Nothing is built until a
+  // benchmark runs, so the ones left out by name cost nothing
+  static ArrayList<MazeBenchmark> benchmarks(int size) {
+    ArrayList<MazeBenchmark> result = new ArrayList<MazeBenchmark>();
+
+    result.add(new MazeBenchmark("generate", size, () -> {
+      return () -> {
+        sink += new MazeGenerator(size, size, size).generate().walls[0];
+      };
+    }));
+
+    result.add(new MazeBenchmark("generate-biased", size, () -> {
+      WallWeight biased = new BiasedWeight(true, 0.5);
+      return () -> {
+        sink += new MazeGenerator(size, size, size, biased).generate()
+            .walls[0];
+      };
+    }));
+
+    for (String mode : new String[] {"b", "d", "o", "a", "bi"}) {
+      result.add(new MazeBenchmark("solve-" + mode, size, () -> {
+        MazeGrid grid = maze(size);
+        return () -> {
+          MazeSolver solver = new MazeSolver(grid);
+          solver.search(mode);
+          sink += solver.explored;
+        };
+      }));
+    }
+
+    // every neighbor of every cell, through the openings mask and through
+    // the lists getAdjacent builds
+    result.add(new MazeBenchmark("neighbors", size, () -> {
+      MazeGrid grid = maze(size);
+      return () -> {
+        long sum = 0;
+        for (int id = 0; id < grid.size(); id++) {
+          for (int open = grid.openings(id); open != 0; open &= open - 1) {
+            sum += grid.neighbor(id, Integer.lowestOneBit(open));
+          }
+        }
+        sink += sum;
+      };
+    }));
+    result.add(new MazeBenchmark("getAdjacent", size, () -> {
+      MazeGrid grid = maze(size);
+      return () -> {
+        long sum = 0;
+        for (int id = 0; id < grid.size(); id++) {
+          for (Cell c : new GridCell(grid, id).getAdjacent()) {
+            sum += c.num;
+          }
+        }
+        sink += sum;
+      };
+    }));
+
+    result.add(new MazeBenchmark("cellToPosn", size, () -> {
+      Random rand = new Random(size);
+      Graph playing = new Graph(size, size, false, "none");
+      Cell[] cells = new Cell[64];
+      for (int i = 0; i < cells.length; i++) {
+        cells[i] = playing.cellAt(rand.nextInt(size), rand.nextInt(size));
+      }
+      int[] next = {0};
+      return () -> {
+        next[0] = (next[0] + 1) % cells.length;
+        sink += playing.cellToPosn(cells[next[0]]).x;
+      };
+    }));
+
+    // one cell changes between frames, like a solver step
+    result.add(new MazeBenchmark("makeScene", size, () -> {
+      Random rand = new Random(size);
+      Graph drawing = new Graph(size, size, false, "none");
+      drawing.makeScene();
+      return () -> {
+        drawing.grid.check(rand.nextInt(size * size));
+        sink += drawing.makeScene().hashCode();
+      };
+    }));
+    return result;
+  }
+
+  // the maze the solving and neighbor benchmarks run on
+  static MazeGrid maze(int size) {
+    return new MazeGenerator(size, size, size).generate();
+  }
+
+  // warms up, measures and prints one line of results
+  void run() {
+    operation = setup.get();
+    // leave the fixture's garbage out of the measurement
+    System.gc();
+    repeat(WARMUP_NANOS);
+
+    long allocatedBefore = MazeMetrics.allocatedBytes();
+    long start = System.nanoTime();
+    long ops = repeat(MEASURE_NANOS);
+    long elapsed = System.nanoTime() - start;
+    long allocated = MazeMetrics.allocatedBytes() - allocatedBefore;
+
+    double seconds = elapsed / 1e9;
+    String bytesPerOp = "n/a";
+    String allocRate = "n/a";
+    if (allocatedBefore >= 0) {
+      bytesPerOp = String.format("%.0f", (double) allocated / ops);
+      allocRate = String.format("%.1f", allocated / seconds / 1e6);
+    }
+    System.out.println(String.format("%-12s %11s %12.1f %14.0f %12s %12s",
+        name, size + "x" + size, ops / seconds, (double) elapsed / ops,
+        bytesPerOp, allocRate));
+    operation = null; // the fixture can go before the next benchmark
+  }
+
+  // runs the operation at least once and until the time is up,
+  // returning how many times it ran
+  long repeat(long nanos) {
+    long end = System.nanoTime() + nanos;
+    long ops = 0;
+    do {
+      operation.run();
+      ops += 1;
+    } while (System.nanoTime() < end);
+    return ops;
+  }
+}
@@ -0,0 +1,2180 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * The maze model without any javalib dependency: the packed board, the
+ * generator and the solvers. Graph draws and plays these, and MazeRunner
+ * runs them headless.
+ */
+// represents one maze: its board in cells, the seed that decides its
+// walls, and how many pixels wide each cell is drawn. Every Graph has its
+// own, so mazes of different sizes can be generated, solved and drawn side
+// by side in one JVM. The same size, seed and weights always give the same
+// maze, so id() is all a client needs to send to get it back
+class MazeConfig {
+  int width;
+  int height;
+  long seed;
+  int cellSize;
+  WallWeight weights; // shapes the maze, null for uniformly random walls
+
+  // a random board that is drawn 750 pixels tall
+  MazeConfig(int width, int height) {
+    this(width, height, new SplittableRandom().nextLong());
+  }
+
+  // the given board, drawn 750 pixels tall
+  MazeConfig(int width, int height, long seed) {
+    this(width, height, seed, 750 / height);
+  }
+
+  MazeConfig(int width, int height, long seed, int cellSize) {
+    this(width, height, seed, cellSize, null);
+  }
+
+  MazeConfig(int width, int height, long seed, int cellSize, 
+      WallWeight weights) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.cellSize = cellSize;
+    this.weights = weights;
+  }
+
+  // the same maze generated under the given weights
+  MazeConfig weighted(WallWeight weights) {
+    return new MazeConfig(width, height, seed, cellSize, weights);
+  }
+
+  // the maze's identifier, like "40x30-3ade68b1", or "40x30-3ade68b1@radial"
+  // for a weighted maze
+  String id() {
+    String id = width + "x" + height + "-" + Long.toHexString(seed);
+    if (weights == null) {
+      return id;
+    }
+    return id + "@" + weights.name();
+  }
+
+  // the maze with the given identifier
+  static MazeConfig fromId(String id) {
+    String[] weighted = id.split("@", 2);
+    String[] parts = weighted[0].split("[x-]");
+    if (parts.length != 3) {
+      throw new IllegalArgumentException("Not a maze id: " + id);
+    }
+    MazeConfig config;
+    try {
+      config = new MazeConfig(Integer.parseInt(parts[0]), 
+          Integer.parseInt(parts[1]), Long.parseUnsignedLong(parts[2], 16));
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not a maze id: " + id);
+    }
+    if (weighted.length == 2) {
+      config.weights = WallWeight.fromName(weighted[1]);
+    }
+    return config;
+  }
+
+  // the same board and weights with the seed that comes after this one, so
+  // a run of resets is as reproducible as its first maze
+  MazeConfig next() {
+    return new MazeConfig(width, height, 
+        new SplittableRandom(seed).split().nextLong(), cellSize, weights);
+  }
+}
+
+// represents the board as packed primitive arrays: one wall mask byte per
+// cell and one bit per cell for each state, instead of a Cell object graph.
+// Cells are numbered row by row, and walls are numbered 2 * id for the
+// wall right of a cell and 2 * id + 1 for the wall below it
+class MazeGrid {
+  static final byte WALL_RIGHT = 1; // wall between (row, col) and (row, col + 1)
+  static final byte WALL_DOWN = 2; // wall between (row, col) and (row + 1, col)
+
+  // the directions out of a cell, as bits of an openings mask, in the same
+  // order as Cell.getAdjacent. Walking the set bits of a mask visits the
+  // neighbors without building a list:
+  //   for (int open = grid.openings(id); open != 0; open &= open - 1) {
+  //     int next = grid.neighbor(id, Integer.lowestOneBit(open));
+  static final int DOWN = 1;
+  static final int RIGHT = 2;
+  static final int LEFT = 4;
+  static final int UP = 8;
+
+  int width;
+  int height;
+
+  byte[] walls;
+  BitSet checked;
+  BitSet correct;
+  BitSet player;
+  BitSet dirty; // cells whose state changed since the renderer last looked
+  BitSet knockedDown; // walls removed since the renderer last looked
+  MazeEvents events; // gets every change to the board, null for none
+
+  // builds a width x height board with every inner wall standing
+  MazeGrid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.walls = new byte[width * height];
+    this.checked = new BitSet();
+    this.correct = new BitSet();
+    this.player = new BitSet();
+    this.dirty = new BitSet();
+    this.knockedDown = new BitSet();
+
+    for (int id = 0; id < walls.length; id++) {
+      byte mask = 0;
+      if (col(id) < width - 1) {
+        mask |= WALL_RIGHT;
+      }
+      if (row(id) < height - 1) {
+        mask |= WALL_DOWN;
+      }
+      walls[id] = mask;
+    }
+  }
+
+  int size() {
+    return walls.length;
+  }
+
+  int id(int row, int col) {
+    return row * width + col;
+  }
+
+  int row(int id) {
+    return id / width;
+  }
+
+  int col(int id) {
+    return id % width;
+  }
+
+  // state changes go through these so the renderer knows what to repaint
+  void check(int id) {
+    checked.set(id);
+    dirty.set(id);
+    if (events != null) {
+      events.add(MazeEvents.CHECKED, id);
+    }
+  }
+
+  void markCorrect(int id) {
+    correct.set(id);
+    dirty.set(id);
+    if (events != null) {
+      events.add(MazeEvents.CORRECT, id);
+    }
+  }
+
+  void placePlayer(int id) {
+    player.set(id);
+    dirty.set(id);
+    if (events != null) {
+      events.add(MazeEvents.PLAYER, id);
+    }
+  }
+
+  void removePlayer(int id) {
+    player.clear(id);
+    dirty.set(id);
+  }
+
+  // the cell on the left/top side of the given wall
+  int wallFrom(int wall) {
+    return wall >> 1;
+  }
+
+  // the cell on the right/bottom side of the given wall
+  int wallTo(int wall) {
+    if ((wall & 1) == 0) {
+      return (wall >> 1) + 1;
+    }
+    return (wall >> 1) + width;
+  }
+
+  boolean isWall(int wall) {
+    return (walls[wall >> 1] & (1 << (wall & 1))) != 0;
+  }
+
+  void removeWall(int wall) {
+    walls[wall >> 1] &= ~(1 << (wall & 1));
+    knockedDown.set(wall);
+    if (events != null) {
+      events.add(MazeEvents.WALL_REMOVED, wall);
+    }
+  }
+
+  // the ids of every inner wall of the board
+  int[] wallIds() {
+    int[] result = new int[(width - 1) * height + width * (height - 1)];
+    int k = 0;
+    for (int id = 0; id < walls.length; id++) {
+      if (col(id) < width - 1) {
+        result[k] = 2 * id;
+        k += 1;
+      }
+      if (row(id) < height - 1) {
+        result[k] = 2 * id + 1;
+        k += 1;
+      }
+    }
+    return result;
+  }
+
+  // counts the walls still standing
+  int wallCount() {
+    int count = 0;
+    for (byte mask : walls) {
+      count += Integer.bitCount(mask);
+    }
+    return count;
+  }
+
+  // the directions the given cell has no wall in
+  int openings(int id) {
+    int open = 0;
+    if (id < walls.length - width && (walls[id] & WALL_DOWN) == 0) {
+      open |= DOWN;
+    }
+    if (col(id) < width - 1 && (walls[id] & WALL_RIGHT) == 0) {
+      open |= RIGHT;
+    }
+    if (col(id) > 0 && (walls[id - 1] & WALL_RIGHT) == 0) {
+      open |= LEFT;
+    }
+    if (id >= width && (walls[id - width] & WALL_DOWN) == 0) {
+      open |= UP;
+    }
+    return open;
+  }
+
+  // the cell one step from the given cell in the given direction, walls
+  // or not
+  int neighbor(int id, int direction) {
+    if (direction == DOWN) {
+      return id + width;
+    }
+    if (direction == RIGHT) {
+      return id + 1;
+    }
+    if (direction == LEFT) {
+      return id - 1;
+    }
+    return id - width;
+  }
+
+  // the neighbors reachable from the given cell, or -1 behind a wall
+  int left(int id) {
+    if (col(id) == 0 || (walls[id - 1] & WALL_RIGHT) != 0) {
+      return -1;
+    }
+    return id - 1;
+  }
+
+  int right(int id) {
+    if (col(id) == width - 1 || (walls[id] & WALL_RIGHT) != 0) {
+      return -1;
+    }
+    return id + 1;
+  }
+
+  int up(int id) {
+    if (id < width || (walls[id - width] & WALL_DOWN) != 0) {
+      return -1;
+    }
+    return id - width;
+  }
+
+  int down(int id) {
+    if (id >= walls.length - width || (walls[id] & WALL_DOWN) != 0) {
+      return -1;
+    }
+    return id + width;
+  }
+}
+
+// decides the order weighted generation looks at the walls in: the lighter
+// a wall, the sooner it is knocked down, so the weights shape the maze
+interface WallWeight {
+  int MAX_WEIGHT = 1 << 16; // weights are at least 0 and below this
+
+  // the weight of the given wall of the grid, drawing any randomness
+  // from rand
+  int weight(MazeGrid grid, int wall, SplittableRandom rand);
+
+  // a short name for these weights, to tell their mazes apart
+  String name();
+
+  // the weights with the given name
+  static WallWeight fromName(String name) {
+    if (name.equals("random")) {
+      return new RandomWeight();
+    }
+    if (name.equals("radial")) {
+      return new RadialWeight();
+    }
+    String[] parts = name.split("-", 2);
+    if (parts.length == 2 
+        && (parts[0].equals("horizontal") || parts[0].equals("vertical"))) {
+      try {
+        return new BiasedWeight(parts[0].equals("horizontal"), 
+            Double.parseDouble(parts[1]));
+      }
+      catch (NumberFormatException e) {
+        // not a bias, so not a name either
+      }
+    }
+    throw new IllegalArgumentException("Unknown wall weights: " + name);
+  }
+}
+
+// every wall as likely as any other, like unweighted generation
+class RandomWeight implements WallWeight {
+  public int weight(MazeGrid grid, int wall, SplittableRandom rand) {
+    return rand.nextInt(MAX_WEIGHT);
+  }
+
+  public String name() {
+    return "random";
+  }
+}
+
+// favors passages in one direction: walls between side by side cells for
+// horizontal corridors, or walls between cells above one another for
+// vertical ones. A bias of 0 is no bias at all, and 1 takes every favored
+// wall before any other, so the corridors run the whole board
+class BiasedWeight implements WallWeight {
+  boolean horizontal;
+  double bias;
+
+  BiasedWeight(boolean horizontal, double bias) {
+    if (bias < 0 || bias > 1) {
+      throw new IllegalArgumentException("Bias must be between 0 and 1");
+    }
+    this.horizontal = horizontal;
+    this.bias = bias;
+  }
+
+  public int weight(MazeGrid grid, int wall, SplittableRandom rand) {
+    int weight = rand.nextInt(MAX_WEIGHT);
+    // even walls are right of their cell, so they open horizontally
+    if ((wall % 2 == 0) == horizontal) {
+      weight = (int) (weight * (1 - bias));
+    }
+    return weight;
+  }
+
+  public String name() {
+    if (horizontal) {
+      return "horizontal-" + bias;
+    }
+    return "vertical-" + bias;
+  }
+}
+
+// opens the maze up from the middle: walls nearer the center are lighter,
+// with half the weight left random so it isn't just rings
+class RadialWeight implements WallWeight {
+  public int weight(MazeGrid grid, int wall, SplittableRandom rand) {
+    int cell = grid.wallFrom(wall);
+    // the middle of the wall, in cells from the middle of the board
+    double x = grid.col(cell) + (wall % 2 == 0 ? 1.0 : 0.5) 
+        - grid.width / 2.0;
+    double y = grid.row(cell) + (wall % 2 == 0 ? 0.5 : 1.0) 
+        - grid.height / 2.0;
+    double farthest = ((double) grid.width * grid.width 
+        + (double) grid.height * grid.height) / 4.0;
+    int half = MAX_WEIGHT / 2;
+    return (int) (Math.sqrt((x * x + y * y) / farthest) * (half - 1)) 
+        + rand.nextInt(half);
+  }
+
+  public String name() {
+    return "radial";
+  }
+}
+
+// represents the regions of the board as a disjoint-set forest over the
+// int ids of the cells, so merging two regions no longer relabels every cell
+class UnionFind {
+  int[] parent;
+  byte[] rank; // upper bound on the height of each root's tree
+  int count; // number of disjoint regions left
+
+  UnionFind(int n) {
+    this.parent = new int[n];
+    this.rank = new byte[n];
+    this.count = n;
+    for (int i = 0; i < n; i++) {
+      parent[i] = i;
+    }
+  }
+
+  // returns the representative of the region containing x, halving the
+  // path on the way up
+  int find(int x) {
+    while (parent[x] != x) {
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  // merges the regions containing a and b, returns false if they were
+  // already the same region
+  boolean union(int a, int b) {
+    int rootA = find(a);
+    int rootB = find(b);
+    if (rootA == rootB) {
+      return false;
+    }
+
+    if (rank[rootA] < rank[rootB]) {
+      parent[rootA] = rootB;
+    }
+    else if (rank[rootA] > rank[rootB]) {
+      parent[rootB] = rootA;
+    }
+    else {
+      parent[rootB] = rootA;
+      rank[rootA] += 1;
+    }
+    count -= 1;
+    return true;
+  }
+
+  // are all the cells in one region?
+  boolean allConnected() {
+    return count <= 1;
+  }
+
+  // splits every region back into single cells
+  void reset() {
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+    }
+    Arrays.fill(rank, (byte) 0);
+    count = parent.length;
+  }
+}
+
+// generates a maze on a MazeGrid with randomized Kruskal's algorithm: walls
+// are taken in random order and knocked down whenever they separate two
+// regions, until the whole board is one region. The maze can be built all
+// at once with generate, or one wall at a time with step. All its
+// randomness comes from one seeded SplittableRandom, so a seed and a size
+// always give the same maze
+class MazeGenerator {
+  MazeGrid grid;
+  UnionFind regions; // regions joined so far, indexed by cell id
+  int[] wallOrder; // every wall, in the order generation looks at them
+  int nextWall; // how much of wallOrder has been looked at
+
+  MazeGenerator(int width, int height, long seed) {
+    this(width, height, seed, null);
+  }
+
+  MazeGenerator(MazeConfig config) {
+    this(config.width, config.height, config.seed, config.weights);
+  }
+
+  // a generator that knocks the lightest walls down first under the given
+  // weights, or takes every wall with the same chance if they are null.
+  // Walls of equal weight come in random order
+  MazeGenerator(int width, int height, long seed, WallWeight weights) {
+    this.grid = new MazeGrid(width, height);
+    this.regions = new UnionFind(grid.size());
+    this.wallOrder = grid.wallIds();
+    this.nextWall = 0;
+    SplittableRandom rand = new SplittableRandom(seed);
+    shuffle(wallOrder, rand);
+    if (weights != null) {
+      wallOrder = sortByWeight(grid, wallOrder, weights, rand);
+    }
+  }
+
+  // puts the given walls in a uniformly random order (Fisher-Yates)
+  static void shuffle(int[] walls, SplittableRandom rand) {
+    for (int i = walls.length - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int swap = walls[i];
+      walls[i] = walls[j];
+      walls[j] = swap;
+    }
+  }
+
+  // the given walls of the grid ordered from lightest to heaviest with a
+  // counting sort over the weight range, which takes linear time. The sort
+  // is stable, so walls of equal weight keep the order they came in
+  static int[] sortByWeight(MazeGrid grid, int[] walls, WallWeight weights,
+      SplittableRandom rand) {
+    int[] keys = new int[walls.length];
+    int[] starts = new int[WallWeight.MAX_WEIGHT + 1];
+    for (int i = 0; i < walls.length; i++) {
+      int weight = weights.weight(grid, walls[i], rand);
+      if (weight < 0 || weight >= WallWeight.MAX_WEIGHT) {
+        throw new IllegalArgumentException("Wall weight out of range: " 
+            + weight);
+      }
+      keys[i] = weight;
+      starts[weight + 1] += 1;
+    }
+    for (int w = 1; w < starts.length; w++) {
+      starts[w] += starts[w - 1];
+    }
+
+    int[] sorted = new int[walls.length];
+    for (int i = 0; i < walls.length; i++) {
+      sorted[starts[keys[i]]] = walls[i];
+      starts[keys[i]] += 1;
+    }
+    return sorted;
+  }
+
+  // is the whole board one region?
+  boolean done() {
+    return regions.allConnected();
+  }
+
+  // looks at the next wall and knocks it down if it separates two 
+  // different regions, returning whether it did
+  boolean step() {
+    int wall = wallOrder[nextWall];
+    nextWall += 1;
+
+    if (regions.union(grid.wallFrom(wall), grid.wallTo(wall))) {
+      grid.removeWall(wall);
+      return true;
+    }
+    return false;
+  }
+
+  // keeps stepping until the maze is done or the given number of
+  // nanoseconds is up, but always until at least one wall comes down.
+  // The clock is only read every 64 walls. Returns how many walls came down
+  int stepFor(long nanos) {
+    long end = System.nanoTime() + nanos;
+    int removed = 0;
+    while (!done()) {
+      if (step()) {
+        removed += 1;
+      }
+      if ((nextWall & 63) == 0 && removed > 0 && System.nanoTime() >= end) {
+        break;
+      }
+    }
+    return removed;
+  }
+
+  // finishes the maze and returns its grid
+  MazeGrid generate() {
+    while (!done()) {
+      step();
+    }
+    return grid;
+  }
+}
+
+// represents one search of a MazeGrid from a start cell to a goal cell.
+// The search runs to completion up front in O(cells) with an int frontier,
+// a visited bitset and a parent array, and records the order it explored
+// the cells in so Graph can replay it one cell per tick
+class MazeSolver {
+  MazeGrid grid;
+  int start;
+  int goal;
+
+  BitSet visited;
+  int[] parent; // the cell each visited cell was reached from
+  int[] order; // the cells in the order the search explored them
+  int explored; // how much of order is used
+
+  // a solver from the top left cell to the bottom right cell
+  MazeSolver(MazeGrid grid) {
+    this(grid, 0, grid.size() - 1);
+  }
+
+  MazeSolver(MazeGrid grid, int start, int goal) {
+    this.grid = grid;
+    this.start = start;
+    this.goal = goal;
+    this.visited = new BitSet();
+    this.parent = new int[grid.size()];
+    this.order = new int[grid.size()];
+    this.explored = 0;
+  }
+
+  // runs the search named by an autosolve mode: "b" for breadth first,
+  // "d" for depth first, "o" for straight down the solution path, "a" for
+  // A* and "bi" for breadth first from both ends
+  void search(String mode) {
+    if (mode.equals("b")) {
+      breadthFirst();
+    }
+    else if (mode.equals("d")) {
+      depthFirst();
+    }
+    else if (mode.equals("o")) {
+      alongPath(true);
+    }
+    else if (mode.equals("a")) {
+      aStar();
+    }
+    else if (mode.equals("bi")) {
+      bidirectional();
+    }
+    else {
+      throw new IllegalArgumentException("Unknown solver: " + mode);
+    }
+  }
+
+  // explores the maze breadth first. The order array doubles as the queue,
+  // since cells leave a queue in the order they entered it
+  void breadthFirst() {
+    visited.set(start);
+    parent[start] = start;
+    order[0] = start;
+    int tail = 1;
+
+    while (explored < tail) {
+      int cell = order[explored];
+      explored += 1;
+      if (cell == goal) {
+        return;
+      }
+      tail = reach(order, tail, grid.down(cell), cell);
+      tail = reach(order, tail, grid.right(cell), cell);
+      tail = reach(order, tail, grid.left(cell), cell);
+      tail = reach(order, tail, grid.up(cell), cell);
+    }
+  }
+
+  // explores the maze depth first, taking the neighbors in the same order
+  // as Cell.getAdjacent
+  void depthFirst() {
+    int[] stack = new int[grid.size()];
+    visited.set(start);
+    parent[start] = start;
+    stack[0] = start;
+    int top = 1;
+
+    while (top > 0) {
+      top -= 1;
+      int cell = stack[top];
+      order[explored] = cell;
+      explored += 1;
+      if (cell == goal) {
+        return;
+      }
+      // pushed in reverse so the first neighbor is explored first
+      top = reach(stack, top, grid.up(cell), cell);
+      top = reach(stack, top, grid.left(cell), cell);
+      top = reach(stack, top, grid.right(cell), cell);
+      top = reach(stack, top, grid.down(cell), cell);
+    }
+  }
+
+  // explores the cells with the shortest distance from start plus
+  // Manhattan distance to goal first, and of those the ones nearest goal.
+  // A maze has one way into each cell, so a cell's distance is final the
+  // first time it is reached. The heap's keys hold the estimate in the high
+  // bits and the distance left in the low bits, next to their cells
+  void aStar() {
+    long[] keys = new long[grid.size()];
+    int[] cells = new int[grid.size()];
+    visited.set(start);
+    parent[start] = start;
+    int size = push(keys, cells, 0, start, 0);
+
+    while (size > 0) {
+      int cell = cells[0];
+      int distance = (int) (keys[0] >>> 32) - (int) keys[0];
+      size -= 1;
+      siftDown(keys, cells, size, keys[size], cells[size]);
+      order[explored] = cell;
+      explored += 1;
+      if (cell == goal) {
+        return;
+      }
+      for (int open = grid.openings(cell); open != 0; open &= open - 1) {
+        int n = grid.neighbor(cell, Integer.lowestOneBit(open));
+        if (!visited.get(n)) {
+          visited.set(n);
+          parent[n] = cell;
+          size = push(keys, cells, size, n, distance + 1);
+        }
+      }
+    }
+  }
+
+  // how many moves the given cell is from goal if there were no walls
+  int manhattan(int cell) {
+    return Math.abs(grid.row(cell) - grid.row(goal)) 
+        + Math.abs(grid.col(cell) - grid.col(goal));
+  }
+
+  // adds the given cell at the given distance from start to the A* heap,
+  // and returns the new size of the heap
+  int push(long[] keys, int[] cells, int size, int cell, int distance) {
+    int left = manhattan(cell);
+    long key = (long) (distance + left) << 32 | left;
+    int i = size;
+    while (i > 0 && keys[(i - 1) / 2] > key) {
+      keys[i] = keys[(i - 1) / 2];
+      cells[i] = cells[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    keys[i] = key;
+    cells[i] = cell;
+    return size + 1;
+  }
+
+  // puts the given key and cell at the root of the A* heap and moves them
+  // down into place
+  static void siftDown(long[] keys, int[] cells, int size, long key, 
+      int cell) {
+    int i = 0;
+    while (2 * i + 1 < size) {
+      int child = 2 * i + 1;
+      if (child + 1 < size && keys[child + 1] < keys[child]) {
+        child += 1;
+      }
+      if (keys[child] >= key) {
+        break;
+      }
+      keys[i] = keys[child];
+      cells[i] = cells[child];
+      i = child;
+    }
+    keys[i] = key;
+    cells[i] = cell;
+  }
+
+  // explores breadth first from start and from goal at once, always
+  // growing the smaller frontier, until the two searches meet. One array
+  // holds both queues: start's from the front and goal's from the back
+  void bidirectional() {
+    int size = grid.size();
+    int[] queue = new int[size];
+    BitSet fromGoal = new BitSet();
+    int[] toGoal = new int[size]; // the next cell on the way to goal
+
+    visited.set(start);
+    parent[start] = start;
+    queue[0] = start;
+    int head = 0;
+    int tail = 1;
+    fromGoal.set(goal);
+    toGoal[goal] = goal;
+    queue[size - 1] = goal;
+    int backHead = size - 1;
+    int backTail = size - 2;
+    if (start == goal) {
+      order[0] = start;
+      explored = 1;
+      return;
+    }
+
+    while (head < tail && backHead > backTail) {
+      boolean forward = tail - head <= backHead - backTail;
+      int cell;
+      if (forward) {
+        cell = queue[head];
+        head += 1;
+      }
+      else {
+        cell = queue[backHead];
+        backHead -= 1;
+      }
+      order[explored] = cell;
+      explored += 1;
+
+      for (int open = grid.openings(cell); open != 0; open &= open - 1) {
+        int n = grid.neighbor(cell, Integer.lowestOneBit(open));
+        if (forward ? fromGoal.get(n) : visited.get(n)) {
+          // the searches met, so follow goal's search the rest of the way
+          int from = forward ? cell : n;
+          int to = forward ? n : cell;
+          while (from != goal) {
+            visited.set(to);
+            parent[to] = from;
+            from = to;
+            to = toGoal[to];
+          }
+          return;
+        }
+        if (forward && !visited.get(n)) {
+          visited.set(n);
+          parent[n] = cell;
+          queue[tail] = n;
+          tail += 1;
+        }
+        else if (!forward && !fromGoal.get(n)) {
+          fromGoal.set(n);
+          toGoal[n] = cell;
+          queue[backTail] = n;
+          backTail -= 1;
+        }
+      }
+    }
+  }
+
+  // walks straight down the solution path, only exploring the first cell
+  // of each wrong branch along the way, and none of them if
+  // showBranches is false
+  void alongPath(boolean showBranches) {
+    breadthFirst();
+    int[] path = path();
+    explored = 0;
+
+    for (int i = 0; i < path.length - 1; i++) {
+      int next = path[i + 1];
+      if (showBranches) {
+        int cell = path[i];
+        for (int open = grid.openings(cell); open != 0; open &= open - 1) {
+          int branch = grid.neighbor(cell, Integer.lowestOneBit(open));
+          if (branch == next) {
+            break;
+          }
+          if (branch != parent[cell]) {
+            order[explored] = branch;
+            explored += 1;
+          }
+        }
+      }
+      order[explored] = next;
+      explored += 1;
+    }
+  }
+
+  // adds next to the given frontier if it is a cell nobody reached yet,
+  // and returns the new size of the frontier
+  int reach(int[] frontier, int size, int next, int from) {
+    if (next == -1 || visited.get(next)) {
+      return size;
+    }
+    visited.set(next);
+    parent[next] = from;
+    frontier[size] = next;
+    return size + 1;
+  }
+
+  // the cells from start to goal, or an empty path if goal wasn't reached
+  int[] path() {
+    if (!visited.get(goal)) {
+      return new int[0];
+    }
+    int length = 1;
+    for (int cell = goal; cell != start; cell = parent[cell]) {
+      length += 1;
+    }
+
+    int[] result = new int[length];
+    int cell = goal;
+    for (int i = length - 1; i >= 0; i--) {
+      result[i] = cell;
+      cell = parent[cell];
+    }
+    return result;
+  }
+}
+
+// an index over a finished maze for the distance and path between any two
+// cells. A perfect maze is a tree, so hanging it from a root cell gives
+// every cell one parent and a depth, and the way between two cells goes
+// through their lowest common ancestor. Each cell also gets a jump pointer
+// to an ancestor (Myers' skew-binary jumps), which finds ancestors in
+// O(log n) steps like binary lifting does while taking one int per cell
+// instead of log n
+class MazeTree {
+  MazeGrid grid;
+  int root;
+  int[] parent; // the root is its own parent
+  int[] depth; // moves from the root, or -1 if the root can't reach it
+  int[] jump;
+
+  // indexes the maze hanging from its top left cell
+  MazeTree(MazeGrid grid) {
+    this(grid, 0);
+  }
+
+  MazeTree(MazeGrid grid, int root) {
+    this.grid = grid;
+    this.root = root;
+    this.parent = new int[grid.size()];
+    this.depth = new int[grid.size()];
+    this.jump = new int[grid.size()];
+    Arrays.fill(depth, -1);
+
+    // breadth first, so every cell's parent and its jump are done first
+    int[] queue = new int[grid.size()];
+    queue[0] = root;
+    parent[root] = root;
+    jump[root] = root;
+    depth[root] = 0;
+    int tail = 1;
+    for (int head = 0; head < tail; head++) {
+      int cell = queue[head];
+      for (int open = grid.openings(cell); open != 0; open &= open - 1) {
+        int n = grid.neighbor(cell, Integer.lowestOneBit(open));
+        if (depth[n] == -1) {
+          parent[n] = cell;
+          depth[n] = depth[cell] + 1;
+          jump[n] = jumpFrom(cell);
+          queue[tail] = n;
+          tail += 1;
+        }
+      }
+    }
+  }
+
+  // the jump pointer of a child of the given cell
+  int jumpFrom(int cell) {
+    int up = jump[cell];
+    if (depth[cell] - depth[up] == depth[up] - depth[jump[up]]) {
+      return jump[up];
+    }
+    return cell;
+  }
+
+  // the ancestor of the given cell at the given depth
+  int ancestor(int cell, int atDepth) {
+    while (depth[cell] > atDepth) {
+      if (depth[jump[cell]] >= atDepth) {
+        cell = jump[cell];
+      }
+      else {
+        cell = parent[cell];
+      }
+    }
+    return cell;
+  }
+
+  // the deepest cell that both cells are reached through from the root
+  int lowestCommonAncestor(int a, int b) {
+    if (depth[a] > depth[b]) {
+      a = ancestor(a, depth[b]);
+    }
+    else {
+      b = ancestor(b, depth[a]);
+    }
+    // cells at the same depth have jumps at the same depth
+    while (a != b) {
+      if (jump[a] != jump[b]) {
+        a = jump[a];
+        b = jump[b];
+      }
+      else {
+        a = parent[a];
+        b = parent[b];
+      }
+    }
+    return a;
+  }
+
+  // how many moves it takes to get from a to b, or -1 if b can't be
+  // reached from a
+  int distance(int a, int b) {
+    if (depth[a] == -1 || depth[b] == -1) {
+      return -1;
+    }
+    return depth[a] + depth[b] - 2 * depth[lowestCommonAncestor(a, b)];
+  }
+
+  // the cells from a to b, or an empty path if b can't be reached from a
+  int[] path(int a, int b) {
+    int length = distance(a, b);
+    if (length == -1) {
+      return new int[0];
+    }
+    int[] result = new int[length + 1];
+    int meet = lowestCommonAncestor(a, b);
+    int i = 0;
+    for (int cell = a; cell != meet; cell = parent[cell]) {
+      result[i] = cell;
+      i += 1;
+    }
+    int j = length;
+    for (int cell = b; cell != meet; cell = parent[cell]) {
+      result[j] = cell;
+      j -= 1;
+    }
+    result[i] = meet;
+    return result;
+  }
+}
+
+// generates a maze on several cores for very large boards. Every wall gets
+// a random weight from a hash of the seed and its id, and the maze is the
+// minimum spanning tree under those weights, which is what randomized
+// Kruskal builds. The board is cut into square tiles whose spanning forests
+// are built in parallel on a fork-join pool, and neighboring regions of
+// tiles are then merged pairwise on the pool until one region is the whole
+// board. A wall a region's forest leaves standing closes a cycle of lighter
+// walls inside that region, so it can't be in the whole board's tree
+// either, and a forest wall that no path between the region's border cells
+// crosses can't be on any cycle the rest of the board closes, so it is
+// knocked down for good. Each region only carries up its forest contracted
+// to its border (see MazeRegion), so the merges get smaller as the regions
+// grow and the last one only sees the cells along the middle of the board.
+// The maze only depends on the seed, not on the tile size or the number of
+// threads
+class ParallelMazeGenerator {
+  // tiles 256 cells on a side: big enough that the borders the merges work
+  // on are small next to the tiles, small enough that a 2000x2000 board has
+  // 64 tiles to share between the cores
+  static final int DEFAULT_TILE_SIZE = 256;
+
+  MazeGrid grid;
+  long seed;
+  int tileSize;
+  int tilesAcross;
+  int tilesDown;
+
+  LongAdder tileNanos; // time every thread spent building tiles
+  LongAdder mergeNanos; // time every thread spent merging regions
+
+  ParallelMazeGenerator(int width, int height, long seed, int tileSize) {
+    this.grid = new MazeGrid(width, height);
+    this.seed = seed;
+    this.tileSize = tileSize;
+    this.tilesAcross = (width + tileSize - 1) / tileSize;
+    this.tilesDown = (height + tileSize - 1) / tileSize;
+    this.tileNanos = new LongAdder();
+    this.mergeNanos = new LongAdder();
+  }
+
+  // builds the maze on the given pool and returns its grid. Walls are
+  // knocked down straight in grid.walls, so grid.knockedDown stays empty;
+  // a renderer paints a new board whole anyway
+  MazeGrid generate(ForkJoinPool pool) {
+    pool.invoke(new RegionTask(this, 0, 0, tilesDown, tilesAcross));
+    return grid;
+  }
+
+  // the wall's weight in the high bits and the wall in the low bits, so
+  // sorting keys sorts walls by weight with ties broken by id
+  long key(int wall) {
+    long z = seed + (wall + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    z = z ^ (z >>> 31);
+    return ((z >>> 33) << 32) | wall;
+  }
+
+  // knocks down a wall of the finished maze. Only the tasks merging the
+  // tile the wall's cell is in ever write that cell, and they run one
+  // after another, so no two threads write the same byte
+  void knockDown(int wall) {
+    grid.walls[wall >> 1] &= ~(1 << (wall & 1));
+  }
+
+  // builds the spanning forest of one tile with its own small union-find,
+  // and contracts it to the tile's border
+  MazeRegion buildTile(int tileRow, int tileCol) {
+    long start = System.nanoTime();
+    int top = tileRow * tileSize;
+    int left = tileCol * tileSize;
+    int bottom = Math.min(top + tileSize, grid.height);
+    int right = Math.min(left + tileSize, grid.width);
+    int tileWidth = right - left;
+    int tileCells = tileWidth * (bottom - top);
+
+    long[] inside = new long[2 * tileCells];
+    int insideCount = 0;
+    for (int row = top; row < bottom; row++) {
+      for (int col = left; col < right; col++) {
+        int id = grid.id(row, col);
+        if (col + 1 < right) {
+          inside[insideCount] = key(2 * id);
+          insideCount += 1;
+        }
+        if (row + 1 < bottom) {
+          inside[insideCount] = key(2 * id + 1);
+          insideCount += 1;
+        }
+      }
+    }
+
+    Arrays.sort(inside, 0, insideCount);
+    UnionFind regions = new UnionFind(tileCells);
+    long[] forest = new long[tileCells - 1];
+    int[] from = new int[tileCells - 1];
+    int[] to = new int[tileCells - 1];
+    int forestCount = 0;
+    for (int i = 0; i < insideCount && !regions.allConnected(); i++) {
+      int wall = (int) inside[i];
+      int a = grid.wallFrom(wall);
+      int b = grid.wallTo(wall);
+      int localA = (grid.row(a) - top) * tileWidth + grid.col(a) - left;
+      int localB = (grid.row(b) - top) * tileWidth + grid.col(b) - left;
+      if (regions.union(localA, localB)) {
+        forest[forestCount] = inside[i];
+        from[forestCount] = localA;
+        to[forestCount] = localB;
+        forestCount += 1;
+      }
+    }
+
+    int[] cells = new int[tileCells];
+    for (int i = 0; i < tileCells; i++) {
+      cells[i] = grid.id(top + i / tileWidth, left + i % tileWidth);
+    }
+    MazeRegion result = contract(top, left, bottom, right, cells, forest, 
+        from, to, forestCount);
+    tileNanos.add(System.nanoTime() - start);
+    return result;
+  }
+
+  // merges two regions side by side or one above the other, first being
+  // the left or upper one: Kruskal over their contracted forests and the
+  // walls between them, contracted again to the border of both
+  MazeRegion merge(MazeRegion first, MazeRegion second) {
+    long start = System.nanoTime();
+    boolean sideBySide = first.right == second.left;
+    int crossingCount;
+    if (sideBySide) {
+      crossingCount = first.bottom - first.top;
+    }
+    else {
+      crossingCount = first.right - first.left;
+    }
+    int n = first.edges + second.edges + crossingCount;
+    long[] keys = new long[n];
+    int[] ends = new int[2 * n];
+    System.arraycopy(first.keys, 0, keys, 0, first.edges);
+    System.arraycopy(first.ends, 0, ends, 0, 2 * first.edges);
+    System.arraycopy(second.keys, 0, keys, first.edges, second.edges);
+    System.arraycopy(second.ends, 0, ends, 2 * first.edges, 
+        2 * second.edges);
+    int e = first.edges + second.edges;
+    for (int i = 0; i < crossingCount; i++) {
+      int wall;
+      if (sideBySide) {
+        wall = 2 * grid.id(first.top + i, first.right - 1);
+      }
+      else {
+        wall = 2 * grid.id(first.bottom - 1, first.left + i) + 1;
+      }
+      keys[e] = key(wall);
+      ends[2 * e] = grid.wallFrom(wall);
+      ends[2 * e + 1] = grid.wallTo(wall);
+      e += 1;
+    }
+
+    // number the cells the edges touch, and sort the edges by key
+    int[] cells = ends.clone();
+    Arrays.sort(cells);
+    int cellCount = 0;
+    for (int i = 0; i < cells.length; i++) {
+      if (i == 0 || cells[i] != cells[i - 1]) {
+        cells[cellCount] = cells[i];
+        cellCount += 1;
+      }
+    }
+    cells = Arrays.copyOf(cells, cellCount);
+    long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    int[] from = new int[n];
+    int[] to = new int[n];
+    for (int i = 0; i < n; i++) {
+      int at = Arrays.binarySearch(sorted, keys[i]);
+      from[at] = Arrays.binarySearch(cells, ends[2 * i]);
+      to[at] = Arrays.binarySearch(cells, ends[2 * i + 1]);
+    }
+
+    // the edges left out close a cycle of lighter ones, so their walls
+    // stay standing
+    UnionFind regions = new UnionFind(cellCount);
+    int forestCount = 0;
+    for (int i = 0; i < n && !regions.allConnected(); i++) {
+      if (regions.union(from[i], to[i])) {
+        sorted[forestCount] = sorted[i];
+        from[forestCount] = from[i];
+        to[forestCount] = to[i];
+        forestCount += 1;
+      }
+    }
+
+    MazeRegion result = contract(first.top, first.left, second.bottom, 
+        second.right, cells, sorted, from, to, forestCount);
+    mergeNanos.add(System.nanoTime() - start);
+    return result;
+  }
+
+  // contracts a forest over the given cells (numbered by their index in
+  // cells) to the border of the given rectangle of the board. Branches
+  // that lead to no border cell are knocked down, since no cycle from
+  // outside can go through them. What is left is paths between border
+  // cells and the cells where they fork; on each path every wall but the
+  // heaviest is knocked down, and the path is carried up as one edge with
+  // that wall's key, since a cycle through the path would go through all
+  // of it and only leave its heaviest wall standing
+  MazeRegion contract(int top, int left, int bottom, int right, int[] cells, 
+      long[] keys, int[] from, int[] to, int n) {
+    int count = cells.length;
+    int[] degree = new int[count];
+    for (int e = 0; e < n; e++) {
+      degree[from[e]] += 1;
+      degree[to[e]] += 1;
+    }
+    int[] first = new int[count + 1]; // where each cell's edges start
+    for (int i = 0; i < count; i++) {
+      first[i + 1] = first[i] + degree[i];
+    }
+    int[] incident = new int[2 * n];
+    int[] next = Arrays.copyOf(first, count);
+    for (int e = 0; e < n; e++) {
+      incident[next[from[e]]] = e;
+      next[from[e]] += 1;
+      incident[next[to[e]]] = e;
+      next[to[e]] += 1;
+    }
+
+    boolean[] kept = new boolean[count];
+    for (int i = 0; i < count; i++) {
+      int row = grid.row(cells[i]);
+      int col = grid.col(cells[i]);
+      kept[i] = (row == top && top > 0) 
+          || (row == bottom - 1 && bottom < grid.height)
+          || (col == left && left > 0) 
+          || (col == right - 1 && right < grid.width);
+    }
+
+    // prune the branches that end away from the border
+    boolean[] done = new boolean[n];
+    int[] leaves = new int[count];
+    int leafCount = 0;
+    for (int i = 0; i < count; i++) {
+      if (!kept[i] && degree[i] == 1) {
+        leaves[leafCount] = i;
+        leafCount += 1;
+      }
+    }
+    while (leafCount > 0) {
+      leafCount -= 1;
+      int leaf = leaves[leafCount];
+      if (degree[leaf] == 1) {
+        int e = openEdge(leaf, first, incident, done);
+        done[e] = true;
+        knockDown((int) keys[e]);
+        int other = from[e] + to[e] - leaf;
+        degree[leaf] -= 1;
+        degree[other] -= 1;
+        if (!kept[other] && degree[other] == 1) {
+          leaves[leafCount] = other;
+          leafCount += 1;
+        }
+      }
+    }
+
+    // walk the paths between border cells and forks
+    for (int i = 0; i < count; i++) {
+      if (degree[i] >= 3) {
+        kept[i] = true;
+      }
+    }
+    MazeRegion result = new MazeRegion(top, left, bottom, right, n);
+    for (int i = 0; i < count; i++) {
+      while (kept[i] && degree[i] > 0) {
+        int e = openEdge(i, first, incident, done);
+        long heaviest = keys[e];
+        done[e] = true;
+        degree[i] -= 1;
+        int at = from[e] + to[e] - i;
+        degree[at] -= 1;
+        while (!kept[at]) {
+          int f = openEdge(at, first, incident, done);
+          done[f] = true;
+          if (keys[f] > heaviest) {
+            knockDown((int) heaviest);
+            heaviest = keys[f];
+          }
+          else {
+            knockDown((int) keys[f]);
+          }
+          degree[at] -= 1;
+          at = from[f] + to[f] - at;
+          degree[at] -= 1;
+        }
+        result.add(heaviest, cells[i], cells[at]);
+      }
+    }
+    return result;
+  }
+
+  // the first edge of the given cell that isn't pruned or walked yet
+  static int openEdge(int cell, int[] first, int[] incident, 
+      boolean[] done) {
+    int k = first[cell];
+    while (done[incident[k]]) {
+      k += 1;
+    }
+    return incident[k];
+  }
+}
+
+// a rectangle of the board that is done being merged inside, and what the
+// rest of the board still needs to know about it: its spanning forest
+// contracted to its border cells, as edges between border cells and forks
+// that each stand for one wall
+class MazeRegion {
+  int top;
+  int left;
+  int bottom;
+  int right;
+
+  long[] keys; // per edge: the key of the wall it stands for
+  int[] ends; // per edge: the cells at its two ends
+  int edges;
+
+  MazeRegion(int top, int left, int bottom, int right, int capacity) {
+    this.top = top;
+    this.left = left;
+    this.bottom = bottom;
+    this.right = right;
+    this.keys = new long[capacity];
+    this.ends = new int[2 * capacity];
+  }
+
+  void add(long key, int from, int to) {
+    keys[edges] = key;
+    ends[2 * edges] = from;
+    ends[2 * edges + 1] = to;
+    edges += 1;
+  }
+}
+
+// builds the maze inside a rectangle of tiles: a tile's forest, or the
+// merge of the two halves of the rectangle split across its longer side
+class RegionTask extends RecursiveTask<MazeRegion> {
+  private static final long serialVersionUID = 1L;
+
+  ParallelMazeGenerator generator;
+  int tileTop;
+  int tileLeft;
+  int tileBottom;
+  int tileRight;
+
+  RegionTask(ParallelMazeGenerator generator, int tileTop, int tileLeft, 
+      int tileBottom, int tileRight) {
+    this.generator = generator;
+    this.tileTop = tileTop;
+    this.tileLeft = tileLeft;
+    this.tileBottom = tileBottom;
+    this.tileRight = tileRight;
+  }
+
+  protected MazeRegion compute() {
+    int down = tileBottom - tileTop;
+    int across = tileRight - tileLeft;
+    if (down == 1 && across == 1) {
+      return generator.buildTile(tileTop, tileLeft);
+    }
+    RegionTask first;
+    RegionTask second;
+    if (down >= across) {
+      int mid = tileTop + down / 2;
+      first = new RegionTask(generator, tileTop, tileLeft, mid, tileRight);
+      second = new RegionTask(generator, mid, tileLeft, tileBottom, 
+          tileRight);
+    }
+    else {
+      int mid = tileLeft + across / 2;
+      first = new RegionTask(generator, tileTop, tileLeft, tileBottom, mid);
+      second = new RegionTask(generator, tileTop, mid, tileBottom, 
+          tileRight);
+    }
+    invokeAll(first, second);
+    return generator.merge(first.join(), second.join());
+  }
+}
+
+// represents a maze stored in the binary maze format:
+//   "MAZE", the format version, width and height as ints, the seed as a
+//   long, then 2 bits per cell row by row, four cells to a byte starting at
+//   the low bits: the cell's MazeGrid wall mask (wall right, wall below)
+// Opening a file maps it into memory without reading it, so the walls of a
+// huge maze are only paged in as they are looked at. The mapping is split
+// into 1 GB chunks since one buffer can't cover more than 2 GB
+class MazeFile {
+  static final int MAGIC = 0x4d415a45; // "MAZE"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 24;
+  static final int CHUNK_BITS = 30;
+
+  int width;
+  int height;
+  long seed;
+  MappedByteBuffer[] chunks; // the wall bytes that follow the header
+
+  MazeFile(int width, int height, long seed, MappedByteBuffer[] chunks) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.chunks = chunks;
+  }
+
+  // maps the maze in the given file
+  static MazeFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, 
+        StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // keep reading until the header is full or the file ends
+      }
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException("Not a maze file: " + path);
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unknown maze file version " + version 
+            + ": " + path);
+      }
+      int width = header.getInt();
+      int height = header.getInt();
+      long seed = header.getLong();
+      if (width < 1 || height < 1) {
+        throw new IOException("Bad maze size " + width + "x" + height 
+            + ": " + path);
+      }
+
+      long bytes = dataBytes((long) width * height);
+      if (channel.size() < HEADER_BYTES + bytes) {
+        throw new IOException("Truncated maze file: " + path);
+      }
+      if (channel.size() > HEADER_BYTES + bytes) {
+        throw new IOException("Trailing bytes in maze file: " + path);
+      }
+      return new MazeFile(width, height, seed, 
+          map(channel, MapMode.READ_ONLY, bytes));
+    }
+  }
+
+  // writes the given maze to the given file
+  static void save(Path path, MazeConfig config, MazeGrid grid) 
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, 
+        StandardOpenOption.CREATE, StandardOpenOption.READ, 
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = header(grid.width, grid.height, config.seed);
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+
+      long offset = 0;
+      for (MappedByteBuffer chunk : map(channel, MapMode.READ_WRITE, 
+          dataBytes(grid.size()))) {
+        while (chunk.hasRemaining()) {
+          int first = (int) (offset * 4);
+          int packed = 0;
+          for (int k = 0; k < 4 && first + k < grid.size(); k++) {
+            packed |= (grid.walls[first + k] & 3) << (2 * k);
+          }
+          chunk.put((byte) packed);
+          offset += 1;
+        }
+        chunk.force();
+      }
+    }
+  }
+
+  // the header of a maze file for the given maze
+  static ByteBuffer header(int width, int height, long seed) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+        .putLong(seed);
+    header.flip();
+    return header;
+  }
+
+  // how many bytes the walls of the given number of cells take
+  static long dataBytes(long cells) {
+    return (cells + 3) / 4;
+  }
+
+  // maps the given number of wall bytes after the header
+  static MappedByteBuffer[] map(FileChannel channel, MapMode mode, long bytes)
+      throws IOException {
+    long chunkBytes = 1L << CHUNK_BITS;
+    MappedByteBuffer[] result = 
+        new MappedByteBuffer[(int) ((bytes + chunkBytes - 1) / chunkBytes)];
+    for (int i = 0; i < result.length; i++) {
+      long start = i * chunkBytes;
+      result[i] = channel.map(mode, HEADER_BYTES + start, 
+          Math.min(chunkBytes, bytes - start));
+    }
+    return result;
+  }
+
+  // the wall mask of the given cell, read straight from the mapping
+  byte walls(long cell) {
+    long offset = cell >> 2;
+    byte packed = chunks[(int) (offset >> CHUNK_BITS)]
+        .get((int) (offset & ((1 << CHUNK_BITS) - 1)));
+    return (byte) ((packed >> ((cell & 3) * 2)) & 3);
+  }
+
+  byte walls(int row, int col) {
+    return walls((long) row * width + col);
+  }
+
+  // the configuration the maze was saved with. Weights aren't saved, so
+  // the id of a weighted maze loaded back doesn't rebuild it, but the walls
+  // in the file are still the maze that was saved
+  MazeConfig config() {
+    return new MazeConfig(width, height, seed);
+  }
+
+  // copies the whole maze onto the heap as a MazeGrid
+  MazeGrid toGrid() {
+    MazeGrid grid = new MazeGrid(width, height);
+    for (int id = 0; id < grid.size(); id++) {
+      grid.walls[id] = walls(id);
+    }
+    return grid;
+  }
+}
+
+// what a finished search found: the cells in the order it explored them
+// and the path, copied out of the MazeSolver so keeping them doesn't keep
+// the solver's arrays or the board it searched
+class MazeSolution {
+  final int[] order;
+  final int[] path;
+
+  MazeSolution(MazeSolver solver) {
+    this.order = Arrays.copyOf(solver.order, solver.explored);
+    this.path = solver.path();
+  }
+
+  // how many cells were explored
+  int explored() {
+    return order.length;
+  }
+}
+
+// a finished maze and, once it has been solved, what the search found.
+// Never changed once cached: solving a cached maze replaces its entry
+class CachedMaze {
+  final byte[] walls;
+  final MazeSolution solution; // null until the maze is solved
+  final MazeTree tree; // the maze hung from the goal over walls, or null
+
+  CachedMaze(byte[] walls, MazeSolution solution) {
+    this(walls, solution, null);
+  }
+
+  CachedMaze(byte[] walls, MazeSolution solution, MazeTree tree) {
+    this.walls = walls;
+    this.solution = solution;
+    this.tree = tree;
+  }
+
+  // how many cells this entry counts for in the cache: the board's, the
+  // explored and path cells of its solution, and the tree's three per cell
+  long cells() {
+    long result = walls.length;
+    if (solution != null) {
+      result += solution.order.length + solution.path.length;
+    }
+    if (tree != null) {
+      result += 3L * tree.parent.length;
+    }
+    return result;
+  }
+
+  // a fresh board with the cached walls and no cell state
+  MazeGrid toGrid(MazeConfig config) {
+    MazeGrid grid = new MazeGrid(config.width, config.height);
+    System.arraycopy(walls, 0, grid.walls, 0, walls.length);
+    return grid;
+  }
+}
+
+// a bounded cache of finished mazes keyed by width, height, seed and
+// solving algorithm, so a maze that is asked for again is neither
+// regenerated nor re-solved. Entries are weighed by their number of cells
+// (see CachedMaze.cells) and the least recently used are evicted once the
+// total passes maxCells.
+// Safe to share between threads
+class MazeCache {
+  LinkedHashMap<String, CachedMaze> entries;
+  long maxCells;
+  long cells; // total cells counted by every cached maze
+
+  long hits;
+  long misses;
+  long evictions;
+
+  MazeCache(long maxCells) {
+    if (maxCells < 1) {
+      throw new IllegalArgumentException("Cache must hold at least one cell");
+    }
+    this.entries = new LinkedHashMap<String, CachedMaze>(16, 0.75f, true);
+    this.maxCells = maxCells;
+  }
+
+  // the key of the given maze solved by the given algorithm
+  static String key(MazeConfig config, String algorithm) {
+    return config.id() + "/" + algorithm;
+  }
+
+  // the cached maze, or null if it isn't cached
+  synchronized CachedMaze get(MazeConfig config, String algorithm) {
+    CachedMaze result = entries.get(key(config, algorithm));
+    if (result == null) {
+      misses += 1;
+    }
+    else {
+      hits += 1;
+    }
+    return result;
+  }
+
+  // caches the given maze, evicting the least recently used mazes if the
+  // cache is over its size
+  synchronized void put(MazeConfig config, String algorithm, 
+      CachedMaze maze) {
+    CachedMaze old = entries.put(key(config, algorithm), maze);
+    if (old != null) {
+      cells -= old.cells();
+    }
+    cells += maze.cells();
+    evict();
+  }
+
+  // adds the given solution to the cached maze, unless it was evicted
+  // while it was being solved
+  synchronized void putSolution(MazeConfig config, String algorithm, 
+      MazeSolution solution) {
+    String key = key(config, algorithm);
+    CachedMaze old = entries.get(key);
+    if (old != null) {
+      CachedMaze solved = new CachedMaze(old.walls, solution, old.tree);
+      entries.put(key, solved);
+      cells += solved.cells() - old.cells();
+      evict();
+    }
+  }
+
+  // evicts the least recently used mazes until the cache is under its size
+  void evict() {
+    Iterator<CachedMaze> eldest = entries.values().iterator();
+    while (cells > maxCells) {
+      cells -= eldest.next().cells();
+      eldest.remove();
+      evictions += 1;
+    }
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  // the fraction of lookups that were hits
+  synchronized double hitRate() {
+    if (hits + misses == 0) {
+      return 0;
+    }
+    return (double) hits / (hits + misses);
+  }
+}
+
+// generates a maze one row at a time with Eller's algorithm and streams it
+// out in the MazeFile format, so only a few arrays as long as one row are
+// ever in memory and the board can be far bigger than the heap. Each row
+// knows which of its cells are already connected through the rows above
+// (a UnionFind over the columns). Neighbors in different sets are joined
+// at random, every set gets at least one way down so nothing is cut off,
+// and the last row joins whatever is still apart. This is a different
+// algorithm from MazeGenerator's, so the same seed gives a different maze
+class EllerGenerator {
+  int width;
+  int height;
+  long seed;
+
+  EllerGenerator(int width, int height, long seed) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+  }
+
+  EllerGenerator(MazeConfig config) {
+    this(config.width, config.height, config.seed);
+  }
+
+  // writes the maze to the given file
+  void writeTo(Path path) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(
+        Files.newOutputStream(path), 1 << 16)) {
+      writeTo(out);
+    }
+  }
+
+  // writes the maze to the given stream, one row at a time
+  void writeTo(OutputStream out) throws IOException {
+    out.write(MazeFile.header(width, height, seed).array());
+
+    SplittableRandom rand = new SplittableRandom(seed);
+    UnionFind row = new UnionFind(width);
+    UnionFind below = new UnionFind(width);
+    int[] last = new int[width]; // the last column of each set in the row
+    int[] first = new int[width]; // the first column each set goes down at
+    BitSet wentDown = new BitSet(width);
+    byte[] walls = new byte[width];
+    byte[] packed = new byte[width / 4 + 2];
+    int bits = 0; // cells are 2 bits, so a byte can span two rows
+    int pending = 0;
+
+    for (int r = 0; r < height; r++) {
+      boolean lastRow = r == height - 1;
+      for (int c = 0; c < width; c++) {
+        byte mask = 0;
+        if (c < width - 1) {
+          mask |= MazeGrid.WALL_RIGHT;
+        }
+        if (!lastRow) {
+          mask |= MazeGrid.WALL_DOWN;
+        }
+        walls[c] = mask;
+      }
+
+      for (int c = 0; c < width - 1; c++) {
+        if ((lastRow || rand.nextBoolean()) && row.union(c, c + 1)) {
+          walls[c] &= ~MazeGrid.WALL_RIGHT;
+        }
+      }
+
+      if (!lastRow) {
+        for (int c = 0; c < width; c++) {
+          last[row.find(c)] = c;
+        }
+        below.reset();
+        Arrays.fill(first, -1);
+        wentDown.clear();
+        for (int c = 0; c < width; c++) {
+          int set = row.find(c);
+          if (rand.nextBoolean() || (last[set] == c && !wentDown.get(set))) {
+            wentDown.set(set);
+            walls[c] &= ~MazeGrid.WALL_DOWN;
+            if (first[set] == -1) {
+              first[set] = c;
+            }
+            else {
+              below.union(first[set], c);
+            }
+          }
+        }
+        UnionFind done = row;
+        row = below;
+        below = done;
+      }
+
+      int length = 0;
+      for (int c = 0; c < width; c++) {
+        bits |= walls[c] << pending;
+        pending += 2;
+        if (pending == 8) {
+          packed[length] = (byte) bits;
+          length += 1;
+          bits = 0;
+          pending = 0;
+        }
+      }
+      out.write(packed, 0, length);
+    }
+    if (pending > 0) {
+      out.write(bits);
+    }
+  }
+}
+
+// where a game reports what it is doing: counts of things that happened,
+// and samples of how long or how big something was. Games only call a
+// sink if they have one, so a game without one pays a null check
+interface MetricsSink {
+  // adds amount to the named counter
+  void count(String name, long amount);
+
+  // adds one sample to the named histogram
+  void record(String name, long value);
+}
+
+// a histogram of non-negative samples in power of two buckets: bucket b
+// holds the samples below 2^b that don't fit in bucket b - 1. Percentiles
+// are only as exact as the buckets, which is plenty to tell a 1 ms frame
+// from a 30 ms one. Safe to record into from any thread
+class LatencyHistogram {
+  AtomicLongArray buckets;
+  LongAdder samples;
+  LongAdder sum;
+  AtomicLong max;
+
+  LatencyHistogram() {
+    this.buckets = new AtomicLongArray(65);
+    this.samples = new LongAdder();
+    this.sum = new LongAdder();
+    this.max = new AtomicLong();
+  }
+
+  void record(long value) {
+    value = Math.max(value, 0);
+    buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+    samples.increment();
+    sum.add(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  long samples() {
+    return samples.sum();
+  }
+
+  long mean() {
+    long n = samples.sum();
+    if (n == 0) {
+      return 0;
+    }
+    return sum.sum() / n;
+  }
+
+  // the most the given fraction of the samples can be, rounded up to the
+  // top of its bucket but never above the largest sample
+  long percentile(double fraction) {
+    long wanted = (long) Math.ceil(fraction * samples.sum());
+    long seen = 0;
+    for (int b = 0; b < buckets.length(); b++) {
+      seen += buckets.get(b);
+      if (seen >= wanted && seen > 0) {
+        if (b == 0) {
+          return 0;
+        }
+        return Math.min(max.get(), (1L << b) - 1);
+      }
+    }
+    return max.get();
+  }
+}
+
+// keeps every count and sample it is sent in memory, and shows them over
+// JMX once registered
+class MazeMetrics implements MetricsSink, MazeMetricsMXBean {
+  ConcurrentHashMap<String, LongAdder> counters;
+  ConcurrentHashMap<String, LatencyHistogram> histograms;
+
+  MazeMetrics() {
+    this.counters = new ConcurrentHashMap<String, LongAdder>();
+    this.histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+  }
+
+  public void count(String name, long amount) {
+    counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+  }
+
+  public void record(String name, long value) {
+    histogram(name).record(value);
+  }
+
+  LatencyHistogram histogram(String name) {
+    return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+  }
+
+  long counter(String name) {
+    LongAdder counter = counters.get(name);
+    if (counter == null) {
+      return 0;
+    }
+    return counter.sum();
+  }
+
+  // shows these metrics on the platform MBean server under the given name
+  ObjectName register(String name) throws JMException {
+    ObjectName id = new ObjectName("maze:type=MazeMetrics,name=" + name);
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, id);
+    return id;
+  }
+
+  public Map<String, Long> getCounters() {
+    TreeMap<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+      result.put(e.getKey(), e.getValue().sum());
+    }
+    return result;
+  }
+
+  public Map<String, Long> getSamples() {
+    TreeMap<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+      result.put(e.getKey(), e.getValue().samples());
+    }
+    return result;
+  }
+
+  public Map<String, Long> getMeans() {
+    TreeMap<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+      result.put(e.getKey(), e.getValue().mean());
+    }
+    return result;
+  }
+
+  public Map<String, Long> getMedians() {
+    return percentiles(0.5);
+  }
+
+  public Map<String, Long> getP99s() {
+    return percentiles(0.99);
+  }
+
+  public Map<String, Long> getMaxes() {
+    TreeMap<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+      result.put(e.getKey(), e.getValue().max.get());
+    }
+    return result;
+  }
+
+  Map<String, Long> percentiles(double fraction) {
+    TreeMap<String, Long> result = new TreeMap<String, Long>();
+    for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+      result.put(e.getKey(), e.getValue().percentile(fraction));
+    }
+    return result;
+  }
+
+  public void reset() {
+    counters.clear();
+    histograms.clear();
+  }
+
+  // bytes allocated by this thread so far, or -1 if the JVM can't tell
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads =
+        ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
+
+// encodes every change to a board as a compact stream of events, so a
+// remote client or a replay can follow a game by applying the changes
+// instead of getting the whole board each frame. After "MZEV" and a
+// version byte, each event is a varint of the change in id since the last
+// event of its type (zigzagged, so small steps either way are small)
+// shifted past 3 bits of event type. A solver's cells and a snapshot's
+// walls sit close together, so most of their events fit in one byte. A
+// BOARD event, followed by the width and height as varints, starts a new
+// board. Events pile up in memory until drained to a stream
+class MazeEvents {
+  static final int MAGIC = 0x4d5a4556; // "MZEV"
+  static final int VERSION = 1;
+
+  static final int WALL_REMOVED = 0;
+  static final int CHECKED = 1;
+  static final int CORRECT = 2;
+  static final int PLAYER = 3; // the player moved to the cell
+  static final int BOARD = 4;
+
+  byte[] buffer;
+  int length;
+  long[] last; // the id of the last event of each type
+
+  MazeEvents() {
+    this.buffer = new byte[256];
+    this.last = new long[BOARD];
+    writeInt(MAGIC);
+    writeByte(VERSION);
+  }
+
+  // starts a new board, with the walls it already has down and the
+  // cells it already has marked
+  void board(MazeGrid grid) {
+    writeVarint(BOARD);
+    writeVarint(grid.width);
+    writeVarint(grid.height);
+    Arrays.fill(last, 0);
+    for (int wall : grid.wallIds()) {
+      if (!grid.isWall(wall)) {
+        add(WALL_REMOVED, wall);
+      }
+    }
+    addAll(CHECKED, grid.checked);
+    addAll(CORRECT, grid.correct);
+    addAll(PLAYER, grid.player);
+  }
+
+  void addAll(int type, BitSet cells) {
+    for (int id = cells.nextSetBit(0); id >= 0; 
+        id = cells.nextSetBit(id + 1)) {
+      add(type, id);
+    }
+  }
+
+  // records that the given change happened to the given cell or wall
+  void add(int type, long id) {
+    long delta = id - last[type];
+    last[type] = id;
+    writeVarint(((delta << 1) ^ (delta >> 63)) << 3 | type);
+  }
+
+  void writeVarint(long value) {
+    while ((value & ~0x7fL) != 0) {
+      writeByte((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    writeByte((int) value);
+  }
+
+  void writeInt(int value) {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      writeByte(value >>> shift);
+    }
+  }
+
+  void writeByte(int b) {
+    if (length == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[length] = (byte) b;
+    length += 1;
+  }
+
+  // sends the events so far to the given stream and forgets them
+  void drainTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, length);
+    length = 0;
+  }
+}
+
+// reads a stream of MazeEvents one event at a time, and can rebuild the
+// board they describe
+class MazeEventReader {
+  DataInputStream in;
+  long[] last;
+
+  // the event just read
+  int type;
+  long id; // the cell or wall, for every type but BOARD
+  int width; // the size of the board, for BOARD
+  int height;
+
+  MazeEventReader(InputStream in) throws IOException {
+    this.in = new DataInputStream(in);
+    this.last = new long[MazeEvents.BOARD];
+    if (this.in.readInt() != MazeEvents.MAGIC) {
+      throw new IOException("Not a maze event stream");
+    }
+    int version = this.in.readUnsignedByte();
+    if (version != MazeEvents.VERSION) {
+      throw new IOException("Unknown maze event version " + version);
+    }
+  }
+
+  // reads the next event, returning false at the end of the stream
+  boolean next() throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      return false;
+    }
+    long value = readVarint(first);
+    type = (int) (value & 7);
+    if (type == MazeEvents.BOARD) {
+      width = (int) readVarint(in.readUnsignedByte());
+      height = (int) readVarint(in.readUnsignedByte());
+      Arrays.fill(last, 0);
+    }
+    else if (type < MazeEvents.BOARD) {
+      long zigzag = value >>> 3;
+      id = last[type] + ((zigzag >>> 1) ^ -(zigzag & 1));
+      last[type] = id;
+    }
+    else {
+      throw new IOException("Unknown maze event type " + type);
+    }
+    return true;
+  }
+
+  // the rest of a varint whose first byte is given
+  long readVarint(int first) throws IOException {
+    long value = first & 0x7f;
+    int shift = 7;
+    int b = first;
+    while ((b & 0x80) != 0) {
+      b = in.read();
+      if (b == -1) {
+        throw new EOFException("Maze event cut short");
+      }
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    }
+    return value;
+  }
+
+  // applies every event left in the stream and returns the last board
+  // they describe, or null if they never started one
+  MazeGrid replay() throws IOException {
+    MazeGrid grid = null;
+    int player = -1;
+    while (next()) {
+      if (type == MazeEvents.BOARD) {
+        grid = new MazeGrid(width, height);
+        player = -1;
+      }
+      else if (grid == null) {
+        throw new IOException("Maze event before any board");
+      }
+      else if (type == MazeEvents.WALL_REMOVED) {
+        grid.removeWall((int) id);
+      }
+      else if (type == MazeEvents.CHECKED) {
+        grid.check((int) id);
+      }
+      else if (type == MazeEvents.CORRECT) {
+        grid.markCorrect((int) id);
+      }
+      else {
+        if (player != -1) {
+          grid.removePlayer(player);
+        }
+        player = (int) id;
+        grid.placePlayer(player);
+      }
+    }
+    return grid;
+  }
+}
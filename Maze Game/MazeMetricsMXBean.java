@@ -0,0 +1,24 @@
+import java.util.Map;
+
+/*
+ * What MazeMetrics shows over JMX, for jconsole and other JMX clients.
+ * Counters are totals, and the latency maps are keyed by histogram name
+ * with values in the histogram's unit (nanoseconds for timings, bytes for
+ * allocations). JMX needs this interface to be public, so it has a file of
+ * its own.
+ */
+public interface MazeMetricsMXBean {
+  Map<String, Long> getCounters();
+
+  Map<String, Long> getSamples();
+
+  Map<String, Long> getMeans();
+
+  Map<String, Long> getMedians();
+
+  Map<String, Long> getP99s();
+
+  Map<String, Long> getMaxes();
+
+  void reset();
+}
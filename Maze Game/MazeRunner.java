@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Runs mazes without a window or javalib, for servers and throughput
+ * tests. Generates count mazes of the given size, solves each one with the
+ * given autosolve mode and prints the path lengths and timings:
+ * 
+ *   java MazeRunner <width> <height> [count] [seed] [b|d|o|a|bi] 
+ *       [parallel|stream <file>]
+ * 
+ * Maze i gets seed + i - 1 as its seed, and its id is printed; with no
+ * seed every run gives different mazes. With "parallel" the mazes are
+ * generated on every core with ParallelMazeGenerator. With "stream" each
+ * maze is generated row by row with EllerGenerator straight into the given
+ * file, which is left holding the last maze, and then solved from the
+ * mapped file. Those generators make different mazes from the same seed,
+ * so their ids are printed tagged with the generator: only an untagged id
+ * is rebuilt by MazeGenerator(MazeConfig.fromId(id)).
+ */
+class MazeRunner {
+  static final String USAGE = "usage: java MazeRunner <width> <height>"
+      + " [count] [seed] [b|d|o|a|bi] [parallel|stream <file>]";
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println(USAGE);
+      return;
+    }
+    int width = Integer.parseInt(args[0]);
+    int height = Integer.parseInt(args[1]);
+    int count = 1;
+    if (args.length > 2) {
+      count = Integer.parseInt(args[2]);
+    }
+    long seed = new SplittableRandom().nextLong();
+    if (args.length > 3) {
+      seed = Long.parseLong(args[3]);
+    }
+    String mode = "b";
+    if (args.length > 4) {
+      mode = args[4];
+    }
+    ForkJoinPool pool = null;
+    Path stream = null;
+    if (args.length == 6 && args[5].equals("parallel")) {
+      pool = ForkJoinPool.commonPool();
+    }
+    else if (args.length == 7 && args[5].equals("stream")) {
+      stream = Path.of(args[6]);
+    }
+    else if (args.length > 5) {
+      throw new IllegalArgumentException("Bad generator: " 
+          + String.join(" ", Arrays.copyOfRange(args, 5, args.length)) 
+          + "\n" + USAGE);
+    }
+    String generatorTag = "";
+    if (stream != null) {
+      generatorTag = " eller";
+    }
+    else if (pool != null) {
+      generatorTag = " parallel";
+    }
+
+    long totalGenerate = 0;
+    long totalSolve = 0;
+    for (int i = 1; i <= count; i++) {
+      MazeConfig config = new MazeConfig(width, height, seed + i - 1);
+      long start = System.nanoTime();
+      MazeGrid grid;
+      if (stream != null) {
+        new EllerGenerator(config).writeTo(stream);
+        grid = MazeFile.open(stream).toGrid();
+      }
+      else if (pool == null) {
+        grid = new MazeGenerator(config).generate();
+      }
+      else {
+        grid = new ParallelMazeGenerator(width, height, config.seed, 
+            ParallelMazeGenerator.DEFAULT_TILE_SIZE).generate(pool);
+      }
+      long generated = System.nanoTime();
+      MazeSolver solver = new MazeSolver(grid);
+      solver.search(mode);
+      int pathLength = solver.path().length;
+      long solved = System.nanoTime();
+
+      totalGenerate += generated - start;
+      totalSolve += solved - generated;
+      System.out.println("maze " + i + " (" + config.id() + generatorTag 
+          + "): path " + pathLength + " explored " + solver.explored 
+          + " generate " + millis(generated - start) + " ms" 
+          + " solve " + millis(solved - generated) + " ms");
+    }
+
+    long total = totalGenerate + totalSolve;
+    System.out.println(count + " mazes, generate " + millis(totalGenerate) 
+        + " ms, solve " + millis(totalSolve) + " ms, " 
+        + String.format("%.1f", count / (total / 1e9)) + " mazes/s");
+  }
+
+  // formats nanoseconds as milliseconds with one decimal
+  static String millis(long nanos) {
+    return String.format("%.1f", nanos / 1e6);
+  }
+}
@@ -0,0 +1,303 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Hosts mazes for many players at once over a local socket, without a
+ * window or javalib. Every connection is one player with one game at a
+ * time, played on the connection's own thread. Players on the same maze
+ * share its walls and tree index from the cache, which nobody changes once
+ * they are built, so a game only keeps where its player is and how many
+ * moves they made. The connection's thread is a virtual thread on Java 21
+ * and later, but a platform thread on Java 17 (see newThreadPerTask),
+ * which bounds how many players can connect at once. The protocol is one
+ * command per line and one reply per line:
+ *
+ *   NEW <width> <height> [seed]  ->  OK <maze id>
+ *   MOVE <up|down|left|right>    ->  AT <row> <col> | WIN <path length>
+ *   DIST                         ->  DIST <moves left to the goal>
+ *   SOLVE [b|d|o|a|bi]           ->  PATH <path length> EXPANDED <cells>
+ *   QUIT                         ->  BYE
+ *
+ * and anything else gets ERR <reason>. Moves and distances are answered
+ * from the maze's tree index, so they take the same time on any board.
+ *
+ *   java MazeServer [port]
+ */
+class MazeServer {
+  static final int DEFAULT_PORT = 7878;
+  static final long MAX_CELLS = 1 << 24; // the biggest board to play on
+  static final long RETRY_MILLIS = 100; // wait after a failed accept
+
+  ServerSocket socket;
+  ExecutorService threads;
+  MazeCache cache;
+  MetricsSink metrics; // null to record nothing; server.players counts
+                       // the players connected right now
+
+  MazeServer(ServerSocket socket, MazeCache cache) {
+    this.socket = socket;
+    this.threads = newThreadPerTask();
+    this.cache = cache;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = DEFAULT_PORT;
+    if (args.length > 0) {
+      port = Integer.parseInt(args[0]);
+    }
+    ServerSocket socket = new ServerSocket(port, 1024,
+        InetAddress.getLoopbackAddress());
+    MazeServer server = new MazeServer(socket, new MazeCache(1 << 24));
+    System.out.println("serving mazes on " + socket.getLocalSocketAddress());
+    server.serve();
+  }
+
+  // a thread for every task: a virtual thread where the JVM has them
+  // (Java 21 on), so players mostly waiting on their sockets cost little.
+  // Before that, as on the Java 17 this is built with, it falls back to a
+  // cached pool of platform threads: one per connected player, each with
+  // its own stack, so the players at once are limited by memory and the
+  // OS thread limit, and thousands of them have not been measured
+  static ExecutorService newThreadPerTask() {
+    try {
+      Method virtual = Executors.class.getMethod(
+          "newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) virtual.invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  // takes connections until the socket is closed
+  void serve() {
+    while (!socket.isClosed()) {
+      try {
+        Socket client = socket.accept();
+        threads.execute(() -> play(client));
+      }
+      catch (IOException e) {
+        if (socket.isClosed()) {
+          return;
+        }
+        // one connection failed to open; wait a moment before the next, so
+        // a failure that keeps happening (out of file handles) doesn't spin
+        System.err.println("accept failed: " + e.getMessage());
+        try {
+          Thread.sleep(RETRY_MILLIS);
+        }
+        catch (InterruptedException stop) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  // answers one player's commands until they quit or hang up
+  void play(Socket client) {
+    if (metrics != null) {
+      metrics.count("server.connections", 1);
+      metrics.count("server.players", 1);
+    }
+    MazeConnection connection = new MazeConnection(this);
+    try (Socket open = client;
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+            open.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+            open.getOutputStream(), StandardCharsets.UTF_8))) {
+      open.setTcpNoDelay(true);
+      String line = in.readLine();
+      while (line != null) {
+        String reply = connection.handle(line);
+        out.write(reply);
+        out.write('\n');
+        // replies go out at once unless more commands are already waiting
+        if (!in.ready()) {
+          out.flush();
+        }
+        if (reply.equals("BYE")) {
+          break;
+        }
+        line = in.readLine();
+      }
+      out.flush();
+    }
+    catch (IOException e) {
+      // the player hung up
+    }
+    finally {
+      if (metrics != null) {
+        metrics.count("server.players", -1);
+      }
+    }
+  }
+
+  // stops taking connections and lets the games being played finish
+  void close() throws IOException {
+    socket.close();
+    threads.shutdown();
+  }
+}
+
+// one player's game: the maze hung from the goal to answer moves and
+// distances without searching, and where the player is. The maze and its
+// tree are shared with every other player on it and only read, so the
+// player's cell is kept here instead of on the board
+class MazeSession {
+  MazeConfig config;
+  MazeGrid grid; // the shared board, tree.grid
+  MazeTree tree; // the shared maze hung from the goal
+  int player;
+  int moves;
+
+  MazeSession(MazeConfig config, MazeTree tree) {
+    this.config = config;
+    this.grid = tree.grid;
+    this.tree = tree;
+    this.player = 0;
+    this.moves = 0;
+  }
+
+  // moves the player one cell in the given direction if there is no wall,
+  // and returns where they are or that they won
+  String move(String direction) {
+    int next = -1;
+    if (direction.equals("left")) {
+      next = grid.left(player);
+    }
+    else if (direction.equals("right")) {
+      next = grid.right(player);
+    }
+    else if (direction.equals("down")) {
+      next = grid.down(player);
+    }
+    else if (direction.equals("up")) {
+      next = grid.up(player);
+    }
+    else {
+      throw new IllegalArgumentException("Unknown direction: " + direction);
+    }
+
+    if (next != -1 && !won()) {
+      player = next;
+      moves += 1;
+    }
+    if (won()) {
+      return "WIN " + tree.depth[0];
+    }
+    return "AT " + grid.row(player) + " " + grid.col(player);
+  }
+
+  boolean won() {
+    return player == tree.root;
+  }
+
+  // how many moves the player is from the goal
+  int distance() {
+    return tree.depth[player];
+  }
+}
+
+// what one connection's commands do to its session
+class MazeConnection {
+  MazeServer server;
+  MazeSession session; // null until the first NEW
+
+  MazeConnection(MazeServer server) {
+    this.server = server;
+  }
+
+  // runs one command line and returns the reply line
+  String handle(String line) {
+    long start = System.nanoTime();
+    String[] words = line.trim().split("\\s+");
+    String command = words[0].toUpperCase();
+    String reply;
+    try {
+      reply = run(command, words);
+    }
+    catch (IllegalArgumentException e) {
+      reply = "ERR " + e.getMessage();
+    }
+    if (server.metrics != null) {
+      server.metrics.count("server.commands", 1);
+      server.metrics.record("server.command.nanos",
+          System.nanoTime() - start);
+    }
+    return reply;
+  }
+
+  String run(String command, String[] words) {
+    if (command.equals("QUIT")) {
+      return "BYE";
+    }
+    if (command.equals("NEW")) {
+      return newGame(words);
+    }
+    if (session == null) {
+      if (command.equals("MOVE") || command.equals("DIST")
+          || command.equals("SOLVE")) {
+        throw new IllegalArgumentException("No game, send NEW first");
+      }
+      throw new IllegalArgumentException("Unknown command: " + command);
+    }
+    if (command.equals("MOVE") && words.length == 2) {
+      return session.move(words[1].toLowerCase());
+    }
+    if (command.equals("DIST")) {
+      return "DIST " + session.distance();
+    }
+    if (command.equals("SOLVE")) {
+      String mode = "b";
+      if (words.length > 1) {
+        mode = words[1];
+      }
+      MazeSolver solver = new MazeSolver(session.grid);
+      solver.search(mode);
+      return "PATH " + solver.path().length + " EXPANDED " + solver.explored;
+    }
+    throw new IllegalArgumentException("Bad command: " + String.join(" ",
+        words));
+  }
+
+  // starts a game on the asked for maze, taking it and its tree from the
+  // cache if another player already had it
+  String newGame(String[] words) {
+    if (words.length < 3) {
+      throw new IllegalArgumentException("Usage: NEW <width> <height> [seed]");
+    }
+    int width = Integer.parseInt(words[1]);
+    int height = Integer.parseInt(words[2]);
+    if (width < 1 || height < 1
+        || (long) width * height > MazeServer.MAX_CELLS) {
+      throw new IllegalArgumentException("Board must be 1x1 to "
+          + MazeServer.MAX_CELLS + " cells");
+    }
+    MazeConfig config = new MazeConfig(width, height);
+    if (words.length > 3) {
+      config = new MazeConfig(width, height, Long.parseLong(words[3]));
+    }
+
+    CachedMaze cached = server.cache.get(config, "server");
+    if (cached == null) {
+      MazeGrid grid = new MazeGenerator(config).generate();
+      cached = new CachedMaze(grid.walls, null, 
+          new MazeTree(grid, grid.size() - 1));
+      server.cache.put(config, "server", cached);
+    }
+    session = new MazeSession(config, cached.tree);
+    return "OK " + config.id();
+  }
+}